@@ -0,0 +1,53 @@
+package com.bennavetta.jconsole.benchmark;
+
+import com.bennavetta.jconsole.tui.console.Console;
+import com.bennavetta.jconsole.util.ColorUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ANSI escape sequence handling: ColorPane.appendANSI() into a headless Console's ConsoleDocument, and
+ * ColorUtil.replaceAllAnsiWithHex().<br>
+ * The Console is never displayed, so the benchmark thread is the only one touching it.
+ *
+ * @author woodrow73
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnsiBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int messageLength;
+
+    @Param({"0", "4", "32"})
+    public int colorSwitches;
+
+    private Console console;
+    private String message;
+
+    @Setup
+    public void setup() {
+        console = new Console(Color.black, Color.white, new Font(Font.MONOSPACED, Font.PLAIN, 14), "> ",
+                true, false);
+        // the scrollback limit keeps the document's size flat across iterations
+        console.setScrollbackLimit(1000, 0);
+        message = Messages.message(messageLength, colorSwitches, false) + "\n";
+    }
+
+    @Benchmark
+    public void appendANSI() {
+        console.print(message);
+    }
+
+    @Benchmark
+    public String replaceAllAnsiWithHex() {
+        return ColorUtil.replaceAllAnsiWithHex(message);
+    }
+
+}
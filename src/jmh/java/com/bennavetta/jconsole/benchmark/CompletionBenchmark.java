@@ -0,0 +1,72 @@
+package com.bennavetta.jconsole.benchmark;
+
+import com.bennavetta.jconsole.completion.DefaultCompletionSource;
+import com.bennavetta.jconsole.completion.PrefixCompletionSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completing command prefixes with DefaultCompletionSource (linear scan behind a cache) and PrefixCompletionSource
+ * (binary search over sorted terms).
+ *
+ * @author woodrow73
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int dictionarySize;
+
+    private DefaultCompletionSource defaultSource;
+    private PrefixCompletionSource prefixSource;
+
+    /** Two-letter prefixes of the dictionary's words, cycled through so each call completes a different one */
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> dictionary = Messages.dictionary(dictionarySize);
+        defaultSource = new DefaultCompletionSource(dictionary);
+        prefixSource = new PrefixCompletionSource(dictionary);
+
+        prefixes = new String[64];
+        for(int i = 0; i < prefixes.length; i++)
+            prefixes[i] = dictionary.get(i * dictionary.size() / prefixes.length).substring(0, 2);
+    }
+
+    private String nextPrefix() {
+        next = (next + 1) % prefixes.length;
+        return prefixes[next];
+    }
+
+    /** Every call misses the cache - it's cleared first, so this measures the scan. */
+    @Benchmark
+    public List<String> defaultUncached() {
+        defaultSource.invalidate();
+        return defaultSource.complete(nextPrefix());
+    }
+
+    @Benchmark
+    public List<String> defaultCached() {
+        return defaultSource.complete(nextPrefix());
+    }
+
+    @Benchmark
+    public List<String> prefix() {
+        return prefixSource.complete(nextPrefix());
+    }
+
+    @Benchmark
+    public String prefixLongestCommonPrefix() {
+        return prefixSource.longestCommonPrefix(nextPrefix());
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.bennavetta.jconsole.benchmark;
+
+import com.bennavetta.jconsole.util.ColorUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the benchmark inputs - reproducible, since every generator uses a fixed seed.
+ *
+ * @author woodrow73
+ */
+class Messages {
+
+    private static final String[] ANSI_CODES = ColorUtil.ansiColorMap.keySet().toArray(new String[0]);
+
+    /**
+     * @param length The number of printable characters in the message.
+     * @param colorSwitches The number of color codes spread evenly through the message.
+     * @param hex Whether the color codes are '0xRRGGBB' hex codes rather than ANSI escape sequences.
+     * @return A message of lowercase words.
+     */
+    static String message(int length, int colorSwitches, boolean hex) {
+        Random random = new Random(length * 31L + colorSwitches);
+        StringBuilder message = new StringBuilder();
+        int interval = colorSwitches > 0 ? Math.max(1, length / colorSwitches) : Integer.MAX_VALUE;
+        int switches = 0;
+
+        for(int i = 0; i < length; i++) {
+            if(i % interval == 0 && switches < colorSwitches) {
+                message.append(hex ? ColorUtil.hex(random.nextInt(256), random.nextInt(256), random.nextInt(256)) :
+                        ANSI_CODES[random.nextInt(ANSI_CODES.length)]);
+                switches++;
+            }
+            message.append(random.nextInt(6) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+        }
+        return message.toString();
+    }
+
+    /**
+     * @param size The number of words.
+     * @return Distinct lowercase words of 4-12 characters, e.g. command names.
+     */
+    static List<String> dictionary(int size) {
+        Random random = new Random(size);
+        List<String> words = new ArrayList<>(size);
+        StringBuilder word = new StringBuilder();
+
+        for(int i = 0; i < size; i++) {
+            word.setLength(0);
+            int length = 4 + random.nextInt(9);
+            for(int j = 0; j < length; j++)
+                word.append((char) ('a' + random.nextInt(26)));
+            words.add(word.append(i).toString()); // the suffix keeps the words distinct
+        }
+        return words;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.bennavetta.jconsole.benchmark;
+
+import com.bennavetta.jconsole.tui.HeadlessBackend;
+import com.bennavetta.jconsole.tui.Tui;
+import com.bennavetta.jconsole.tui.console.Console;
+import com.bennavetta.jconsole.tui.console.StyledRun;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TuiParent.print() - tokenizing hex codes into styled runs, then storing them in a HeadlessBackend without Swing, or
+ * appending them to a headless Console's ConsoleDocument.<br>
+ * The Console is never displayed, so the benchmark thread is the only one touching it, as in AnsiBenchmark.
+ *
+ * @author woodrow73
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrintBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int messageLength;
+
+    @Param({"0", "4", "32"})
+    public int colorSwitches;
+
+    /** Where the runs go: "headless" for a HeadlessBackend, "console" for a Console */
+    @Param({"headless", "console"})
+    public String backend;
+
+    private Tui tui;
+    private String message;
+
+    @Setup
+    public void setup() {
+        // the scrollback limit keeps the backend's memory flat across iterations
+        HeadlessBackend target = new HeadlessBackend();
+        if(backend.equals("console")) {
+            Console console = new Console(Color.black, Color.white, new Font(Font.MONOSPACED, Font.PLAIN, 14), "> ",
+                    true, false);
+            console.setScrollbackLimit(1000, 0);
+            target = new ConsoleBackend(console);
+        }
+        tui = new Tui.Builder(target, true).maxScrollbackLines(1000).build();
+        message = Messages.message(messageLength, colorSwitches, true);
+    }
+
+    @Benchmark
+    public void println() {
+        tui.println(message);
+    }
+
+    @Benchmark
+    public void printlnInColor() {
+        tui.println(message, Color.cyan);
+    }
+
+    /** Prints to a Console on the calling thread, instead of through ConsoleHandler's hop to the EDT */
+    private static class ConsoleBackend extends HeadlessBackend {
+        private final Console console;
+
+        ConsoleBackend(Console console) {
+            this.console = console;
+        }
+
+        @Override
+        public void print(List<StyledRun> runs) {
+            console.print(runs);
+        }
+
+        @Override
+        public void setForeground(Color color) {
+            console.setConsoleForeground(color);
+        }
+
+        @Override
+        public Color getDisplayedForeground() {
+            return console.getTextPane().getForeground();
+        }
+    }
+
+}
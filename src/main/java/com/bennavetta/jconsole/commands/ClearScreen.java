@@ -5,6 +5,9 @@ import com.bennavetta.jconsole.tui.console.Console;
 public class ClearScreen implements InputProcessor {
     @Override
     public void process(Console console, String raw, String... args) {
-        console.cls();
+        if(console == null) // not a Swing console - see InputProcessor.process()
+            return;
+
+        console.cls(); // moves itself to the EDT if a processor executor runs this elsewhere
     }
 }
@@ -0,0 +1,226 @@
+package com.bennavetta.jconsole.commands;
+
+import com.bennavetta.jconsole.tui.console.Console;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * An immutable table of commands, looked up by the first argument of the user's input ignoring case.<br>
+ * Names are case-folded when the table is built, and placed by linear probing in a table at most half full - so a
+ * lookup folds the argument while hashing it and usually checks a single slot, without creating a lower case copy.
+ * <br><br>
+ * A command can have aliases, and a table of subcommands that's looked up by the next argument: for "git remote add",
+ * "git" has the subcommand "remote", which has the subcommand "add". Processors are given all of the arguments,
+ * so a subcommand's own arguments start after its name.
+ *
+ * @author woodrow73
+ */
+public final class CommandTable {
+
+    /** A table without commands */
+    public static final CommandTable EMPTY = new CommandTable.Builder().build();
+
+    /** A command and its subcommands */
+    private static final class Entry {
+        final InputProcessor processor;
+        final CommandTable subcommands;
+
+        Entry(InputProcessor processor, CommandTable subcommands) {
+            this.processor = processor;
+            this.subcommands = subcommands;
+        }
+    }
+
+    /** The case-folded name in each slot, or null for an empty slot */
+    private final String[] keys;
+    private final Entry[] entries;
+
+    /** The names and aliases of the commands, as they were given - e.g. for completion */
+    @Getter
+    private final Set<String> names;
+
+    private CommandTable(Map<String, Entry> commands, Set<String> names) {
+        this.names = Collections.unmodifiableSet(names);
+
+        // at least twice as many slots as names, so probe sequences stay short
+        int size = Integer.highestOneBit(Math.max(1, commands.size() * 2 - 1)) << 1;
+        this.keys = new String[size];
+        this.entries = new Entry[size];
+        commands.forEach((key, entry) -> {
+            int slot = hash(key) & (size - 1);
+            while(keys[slot] != null)
+                slot = (slot + 1) & (size - 1);
+            keys[slot] = key;
+            entries[slot] = entry;
+        });
+    }
+
+    /**
+     * Compiles a map of commands, where several names mapped to the same processor act as aliases.<br>
+     * If names only differ in case, the lower case one is kept, as commands used to be looked up in lower case.
+     * @param commandMap The commands by name; it's only read while compiling.
+     * @return The table of the commands.
+     */
+    public static CommandTable compile(Map<String, InputProcessor> commandMap) {
+        Map<String, Entry> commands = new LinkedHashMap<>();
+        Set<String> names = new LinkedHashSet<>();
+        commandMap.forEach((name, processor) -> {
+            if(processor == null)
+                return;
+            String key = fold(name);
+            if(!commands.containsKey(key) || key.equals(name)) {
+                commands.put(key, new Entry(processor, null));
+                names.add(name);
+            }
+        });
+        return new CommandTable(commands, names);
+    }
+
+    /**
+     * @param name The name or alias of a command, in any case.
+     * @return The processor of the command, or null if there's no such command or it only groups subcommands.
+     */
+    public InputProcessor get(CharSequence name) {
+        Entry entry = find(name);
+        return entry == null ? null : entry.processor;
+    }
+
+    /**
+     * @param name The name or alias of a command, in any case.
+     * @return The subcommands of the command, or null if there's no such command or it has no subcommands.
+     */
+    public CommandTable getSubcommands(CharSequence name) {
+        Entry entry = find(name);
+        return entry == null ? null : entry.subcommands;
+    }
+
+    /**
+     * Processes the user's input with the command named by its first argument - or with the deepest subcommand named
+     * by the arguments after it.
+     * @param console The console that the user is interacting with.
+     * @param raw The user's inputted text.
+     * @param args The user's inputted text split into arguments.
+     * @return Whether a command processed the input; false if the input isn't a command of this table.
+     */
+    public boolean process(Console console, String raw, String... args) {
+        return process(0, console, raw, args);
+    }
+
+    private boolean process(int depth, Console console, String raw, String... args) {
+        if(args.length <= depth)
+            return false;
+
+        Entry entry = find(args[depth]);
+        if(entry == null)
+            return false;
+        if(entry.subcommands != null && entry.subcommands.process(depth + 1, console, raw, args))
+            return true;
+        if(entry.processor == null)
+            return false;
+
+        entry.processor.process(console, raw, args);
+        return true;
+    }
+
+    /** @return The entry of the name, probing from the slot it hashes to until the name or an empty slot. */
+    private Entry find(CharSequence name) {
+        int mask = keys.length - 1;
+        for(int slot = hash(name) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if(matches(keys[slot], name))
+                return entries[slot];
+        }
+        return null;
+    }
+
+    /** @return Whether a case-folded key is the name, ignoring case. */
+    private static boolean matches(String key, CharSequence name) {
+        if(key.length() != name.length())
+            return false;
+        for(int i = 0; i < key.length(); i++) {
+            if(Character.toLowerCase(name.charAt(i)) != key.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /** FNV-1a over the case-folded characters of the name. */
+    private static int hash(CharSequence name) {
+        int hash = 0x811C9DC5;
+        for(int i = 0; i < name.length(); i++)
+            hash = (hash ^ Character.toLowerCase(name.charAt(i))) * 0x01000193;
+        return hash ^ (hash >>> 16);
+    }
+
+    /** Folds each character like find() does, so the key has the same length as the name. */
+    private static String fold(String name) {
+        char[] chars = name.toCharArray();
+        for(int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(chars[i]);
+        return new String(chars);
+    }
+
+    /** Builds a CommandTable, one command at a time. */
+    public static class Builder {
+
+        private final Map<String, Entry> commands = new LinkedHashMap<>();
+
+        private final Set<String> names = new LinkedHashSet<>();
+
+        /**
+         * @param name The name of the command.
+         * @param processor Processes the input when the user enters the command.
+         * @param aliases Other names for the command.
+         * @return This Builder object for method chaining.
+         * @throws IllegalArgumentException if a name or alias is already taken, ignoring case.
+         */
+        public CommandTable.Builder command(String name, InputProcessor processor, String... aliases)
+                throws IllegalArgumentException {
+            return command(name, processor, null, aliases);
+        }
+
+        /**
+         * @param name The name of the command.
+         * @param processor Processes the input when the user enters the command without one of its subcommands,
+         *                  or null to process it as an unrecognized command.
+         * @param subcommands The subcommands, looked up by the argument after the name.
+         * @param aliases Other names for the command.
+         * @return This Builder object for method chaining.
+         * @throws IllegalArgumentException if a name or alias is already taken, ignoring case.
+         */
+        public CommandTable.Builder command(String name, InputProcessor processor, CommandTable subcommands,
+                                           String... aliases) throws IllegalArgumentException {
+            Entry entry = new Entry(processor, subcommands);
+            put(name, entry);
+            for(String alias : aliases)
+                put(alias, entry);
+            return this;
+        }
+
+        /**
+         * @param alias Another name for a command.
+         * @param name The name of a command that was already added.
+         * @return This Builder object for method chaining.
+         * @throws IllegalArgumentException if there's no command with the name, or the alias is already taken.
+         */
+        public CommandTable.Builder alias(String alias, String name) throws IllegalArgumentException {
+            Entry entry = commands.get(fold(name));
+            if(entry == null)
+                throw new IllegalArgumentException("No command named " + name);
+            put(alias, entry);
+            return this;
+        }
+
+        private void put(String name, Entry entry) throws IllegalArgumentException {
+            if(commands.putIfAbsent(fold(name), entry) != null)
+                throw new IllegalArgumentException("Command name already taken: " + name);
+            names.add(name);
+        }
+
+        /** @return The table of the commands added so far. */
+        public CommandTable build() {
+            return new CommandTable(new LinkedHashMap<>(commands), new LinkedHashSet<>(names));
+        }
+    }
+
+}
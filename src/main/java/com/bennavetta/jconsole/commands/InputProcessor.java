@@ -22,8 +22,11 @@ import com.bennavetta.jconsole.tui.console.Console;
 public interface InputProcessor {
 
 	/**
-	 * Processes the user's input.
-	 * @param console The console that the user is interacting with.
+	 * Processes the user's input - on the EDT, or on the thread of the console's processor executor if it has one
+	 * (see Console.setProcessorExecutor()). The Console's print, color, font and cls methods may be called from either;
+	 * anything else that touches Swing must run on the EDT.
+	 * @param console The console that the user is interacting with, or null if the input didn't come from a Swing
+	 *                Console - e.g. from a HeadlessBackend or AnsiTerminalBackend.
 	 * @param raw The user's inputted text.
 	 * @param args The user's inputted text split into arguments.
 	 */
@@ -15,23 +15,154 @@
  */
 package com.bennavetta.jconsole.completion;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Caches the completions of each input in a size-bounded LRU cache, with optional expiry.<br><br>
+ * Safe to use from multiple threads. doCompletion() runs outside the cache's lock, so a slow lookup doesn't block
+ * completions that are already cached.
+ */
 public abstract class CachingCompletionSource implements CompletionSource {
-	private Map<String, List<String>> completionCache = new HashMap<String, List<String>>();
-	
+	/** The default maximum number of cached inputs */
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+
+	private final int maxEntries;
+
+	/** How long a cached result stays valid in nanoseconds, or 0 if results never expire */
+	private final long ttlNanos;
+
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+	/** Access-ordered, so the eldest entry is the least recently used one; guarded by its own monitor */
+	private final Map<String, CachedCompletion> completionCache = new LinkedHashMap<String, CachedCompletion>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedCompletion> eldest) {
+			if(size() > maxEntries) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/** Incremented by each invalidation, so results computed before it aren't cached; guarded by completionCache */
+	private long generation;
+
+	/** Caches up to DEFAULT_MAX_ENTRIES inputs, which never expire. */
+	public CachingCompletionSource() {
+		this(DEFAULT_MAX_ENTRIES, 0);
+	}
+
+	/**
+	 * @param maxEntries The maximum number of cached inputs; the least recently used input is evicted beyond it.
+	 * @param ttlMillis How long a cached result stays valid in milliseconds, or 0 if results never expire.
+	 * @throws IllegalArgumentException if maxEntries isn't positive or ttlMillis is negative.
+	 */
+	public CachingCompletionSource(int maxEntries, long ttlMillis) {
+		if(maxEntries < 1 || ttlMillis < 0)
+			throw new IllegalArgumentException("Invalid completion cache settings: maxEntries=" + maxEntries +
+					", ttlMillis=" + ttlMillis);
+
+		this.maxEntries = maxEntries;
+		this.ttlNanos = ttlMillis * 1_000_000;
+	}
+
 	public List<String> complete(String text) {
-		if(completionCache.containsKey(text)) {
-			return completionCache.get(text);
+		CachedCompletion cached = getCached(text);
+		return cached != null ? cached.results : completeAndCache(text);
+	}
+
+	/** Cached results are returned right away; only misses run doCompletion() in the background. */
+	@Override
+	public CompletableFuture<List<String>> completeAsync(String text) {
+		CachedCompletion cached = getCached(text);
+		return cached != null ? CompletableFuture.completedFuture(cached.results) :
+				CompletionExecutor.submit(() -> completeAndCache(text));
+	}
+
+	/** @return the cached completion of the input, or null if it isn't cached or has expired */
+	private CachedCompletion getCached(String text) {
+		synchronized(completionCache) {
+			CachedCompletion cached = completionCache.get(text);
+			if(cached != null) {
+				if(ttlNanos == 0 || System.nanoTime() - cached.createdNanos < ttlNanos) {
+					hits.increment();
+					return cached;
+				}
+				completionCache.remove(text);
+				evictions.increment();
+			}
 		}
-		else {
-			List<String> results = doCompletion(text);
-			completionCache.put(text, results);
-			return results;
+		misses.increment();
+		return null;
+	}
+
+	private List<String> completeAndCache(String text) {
+		long startGeneration;
+		synchronized(completionCache) {
+			startGeneration = generation;
 		}
+
+		List<String> results = doCompletion(text);
+		synchronized(completionCache) {
+			if(generation == startGeneration) // the terms may have changed while completing
+				completionCache.put(text, new CachedCompletion(results, System.nanoTime()));
+		}
+		return results;
+	}
+
+	/** Removes every cached result, e.g. after the underlying terms changed. */
+	public void invalidate() {
+		synchronized(completionCache) {
+			generation++;
+			completionCache.clear();
+		}
+	}
+
+	/**
+	 * Removes the cached results that could contain terms starting with the given prefix - those of inputs that
+	 * start with the prefix, and of shorter inputs that the prefix starts with - ignoring case, like the lookups.
+	 * @param prefix the prefix of the terms that were added or removed
+	 */
+	public void invalidate(String prefix) {
+		String folded = prefix.toLowerCase();
+		synchronized(completionCache) {
+			generation++;
+			completionCache.keySet().removeIf(input -> {
+				String foldedInput = input.toLowerCase();
+				return foldedInput.startsWith(folded) || folded.startsWith(foldedInput);
+			});
+		}
+	}
+
+	/** @return the number of completions answered from the cache */
+	public long getHits() {
+		return hits.sum();
 	}
-	
+
+	/** @return the number of completions that had to call doCompletion() */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/** @return the number of cached results removed for being least recently used or expired */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
 	protected abstract List<String> doCompletion(String input);
+
+	private static class CachedCompletion {
+		private final List<String> results;
+		private final long createdNanos;
+
+		private CachedCompletion(List<String> results, long createdNanos) {
+			this.results = results;
+			this.createdNanos = createdNanos;
+		}
+	}
 }
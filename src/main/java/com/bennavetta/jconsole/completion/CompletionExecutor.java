@@ -0,0 +1,48 @@
+package com.bennavetta.jconsole.completion;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs completions off the EDT for CompletionSource.completeAsync() on a shared pool of daemon threads.<br>
+ * Package-private
+ */
+class CompletionExecutor {
+
+	private static final AtomicInteger threadCount = new AtomicInteger(0);
+
+	private static final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+		Thread thread = new Thread(task, "completion-" + threadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private CompletionExecutor() {}
+
+	/**
+	 * Runs a completion in the background.
+	 * @param completion the completion to run
+	 * @return a future of the completion's result. Cancelling it interrupts the thread running the completion.
+	 */
+	static <T> CompletableFuture<T> submit(Callable<T> completion) {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		Future<?> task = executor.submit(() -> {
+			try {
+				result.complete(completion.call());
+			}
+			catch(Throwable t) {
+				result.completeExceptionally(t);
+			}
+		});
+
+		result.whenComplete((value, error) -> {
+			if(result.isCancelled())
+				task.cancel(true);
+		});
+		return result;
+	}
+}
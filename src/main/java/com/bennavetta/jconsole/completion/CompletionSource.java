@@ -16,6 +16,7 @@
 package com.bennavetta.jconsole.completion;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface CompletionSource
 {
@@ -27,4 +28,50 @@ public interface CompletionSource
 	 * will be inserted. Otherwise, all completions will be shown.
 	 */
 	public List<String> complete(String text);
+
+	/**
+	 * Generate a list of possible completions for an input segment without blocking the caller. By default
+	 * complete() runs on a shared background thread; sources that answer instantly can return a completed future.
+	 * @param text the text to complete
+	 * @return a future of the completions, as returned by complete(). Cancelling it interrupts the lookup.
+	 */
+	public default CompletableFuture<List<String>> completeAsync(String text) {
+		return CompletionExecutor.submit(() -> complete(text));
+	}
+
+	/**
+	 * Find how far an input segment can be extended while still matching every completion
+	 * @param text the text to complete
+	 * @return the longest prefix shared by all completions of the text, starting with the text itself. If there
+	 * are no completions, the text is returned unchanged.
+	 */
+	public default String longestCommonPrefix(String text) {
+		return longestCommonPrefix(text, complete(text));
+	}
+
+	/**
+	 * Find how far an input segment can be extended while still matching every one of its completions, without
+	 * completing it again
+	 * @param text the text that was completed
+	 * @param completions the completions of the text
+	 * @return the longest prefix shared by all of the completions, starting with the text itself. If there are no
+	 * completions, the text is returned unchanged.
+	 */
+	public static String longestCommonPrefix(String text, List<String> completions) {
+		if(completions == null || completions.isEmpty())
+			return text;
+
+		String first = completions.get(0);
+		int length = first.length();
+		for(String completion : completions) {
+			length = Math.min(length, completion.length());
+			for(int i = text.length(); i < length; i++) {
+				if(Character.toLowerCase(completion.charAt(i)) != Character.toLowerCase(first.charAt(i))) {
+					length = i;
+					break;
+				}
+			}
+		}
+		return length <= text.length() ? text : text + first.substring(text.length(), length);
+	}
 }
\ No newline at end of file
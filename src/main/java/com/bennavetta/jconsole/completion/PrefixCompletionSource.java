@@ -0,0 +1,123 @@
+package com.bennavetta.jconsole.completion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Case-insensitive completion backed by a sorted array of case-folded terms.<br><br>
+ * Terms are folded and sorted once when the source is built. A lookup binary searches for the first term with the
+ * given prefix and walks forward until the prefix stops matching, so it costs O(prefix length * log n + results)
+ * instead of scanning every term.
+ */
+public class PrefixCompletionSource implements CompletionSource {
+
+	/** The terms in their original case, in the same order as keys */
+	private final String[] terms;
+
+	/** The case-folded terms, sorted */
+	private final String[] keys;
+
+	/** The maximum number of completions returned by complete(), or 0 for no limit */
+	private final int maxResults;
+
+	public PrefixCompletionSource(String... terms) {
+		this(Arrays.asList(terms), 0);
+	}
+
+	public PrefixCompletionSource(Collection<String> terms) {
+		this(terms, 0);
+	}
+
+	/**
+	 * @param terms The terms to complete; duplicates that only differ in case are all kept.
+	 * @param maxResults The maximum number of completions returned by complete(), or 0 for no limit.
+	 */
+	public PrefixCompletionSource(Collection<String> terms, int maxResults) {
+		String[][] folded = new String[terms.size()][];
+		int i = 0;
+		for(String term : terms)
+			folded[i++] = new String[]{ fold(term), term };
+
+		Arrays.sort(folded, (a, b) -> {
+			int byKey = a[0].compareTo(b[0]);
+			return byKey != 0 ? byKey : a[1].compareTo(b[1]);
+		});
+
+		this.keys = new String[folded.length];
+		this.terms = new String[folded.length];
+		for(i = 0; i < folded.length; i++) {
+			keys[i] = folded[i][0];
+			this.terms[i] = folded[i][1];
+		}
+		this.maxResults = Math.max(0, maxResults);
+	}
+
+	@Override
+	public List<String> complete(String text) {
+		String prefix = fold(text);
+		int first = firstWithPrefix(prefix);
+		if(first == keys.length || !keys[first].startsWith(prefix))
+			return Collections.emptyList();
+
+		List<String> matches = new ArrayList<String>();
+		for(int i = first; i < keys.length && keys[i].startsWith(prefix); i++) {
+			if(maxResults > 0 && matches.size() == maxResults)
+				break;
+			matches.add(terms[i]);
+		}
+		return matches;
+	}
+
+	/** Lookups only take a couple of binary searches, so they're answered on the caller's thread. */
+	@Override
+	public CompletableFuture<List<String>> completeAsync(String text) {
+		return CompletableFuture.completedFuture(complete(text));
+	}
+
+	/**
+	 * Since the matching terms are contiguous in sorted order, their common prefix is the common prefix of the first
+	 * and last match - found with two binary searches, no matter how many terms match.
+	 */
+	@Override
+	public String longestCommonPrefix(String text) {
+		String prefix = fold(text);
+		int first = firstWithPrefix(prefix);
+		if(first == keys.length || !keys[first].startsWith(prefix))
+			return text;
+
+		int last = firstWithPrefix(prefix + Character.MAX_VALUE) - 1;
+		String a = keys[first], b = keys[last];
+		int length = prefix.length();
+		while(length < a.length() && length < b.length() && a.charAt(length) == b.charAt(length))
+			length++;
+
+		// folding keeps the length of each char, so the original term can be cut at the same index
+		return text + terms[first].substring(text.length(), length);
+	}
+
+	/** @return The index of the first key that's greater than or equal to the prefix. */
+	private int firstWithPrefix(String prefix) {
+		int low = 0, high = keys.length;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(keys[mid].compareTo(prefix) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/** Folds each char to lower case on its own, so the folded string has the same length as the original. */
+	private static String fold(String s) {
+		char[] chars = s.toCharArray();
+		for(int i = 0; i < chars.length; i++)
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		return new String(chars);
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.bennavetta.jconsole.history;
+
+import java.util.Locale;
+
+/**
+ * The commands a user entered, oldest first - browsed with the UP and DOWN arrow keys in a Console.<br>
+ * Implementations must be safe to share between consoles, e.g. the consoles of several frames.
+ *
+ * @author woodrow73
+ */
+public interface CommandHistory {
+
+    /**
+     * Adds a command as the newest entry.
+     * @param command The command the user entered.
+     */
+    void add(String command);
+
+    /** @return The number of entries. */
+    int size();
+
+    /**
+     * @param index The index of the entry, from 0 for the oldest to size() - 1 for the newest.
+     * @return The command at that index.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    String get(int index) throws IndexOutOfBoundsException;
+
+    /**
+     * Finds the newest entry before an index that contains the query, ignoring case - used by the reverse search
+     * of a Console (Ctrl+R). This default implementation checks each entry; the histories of this package use an
+     * index instead.
+     * @param query The text to search for.
+     * @param before The index to search before - size() to search every entry.
+     * @return The index of the newest matching entry before the given index, or -1 if there's none.
+     */
+    default int search(String query, int before) {
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        for(int i = Math.min(before, size()) - 1; i >= 0; i--) {
+            if(get(i).toLowerCase(Locale.ROOT).contains(lowerQuery))
+                return i;
+        }
+        return -1;
+    }
+
+}
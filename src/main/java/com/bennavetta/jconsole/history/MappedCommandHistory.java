@@ -0,0 +1,440 @@
+package com.bennavetta.jconsole.history;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A CommandHistory persisted across sessions in two append-only files:<br>
+ * - the data file holds each command as a UTF-8 line<br>
+ * - the index file (the data file's name + ".idx") holds the end offset of each line in the data file as a long<br>
+ * Compacting writes the kept entries to a new generation of both files, named after the given file + ".gen" and a
+ * number, so a file is never replaced while it may still be memory-mapped; older generations are deleted once
+ * they can be.<br><br>
+ * Nothing is read until the history is first used. Adding a command appends to both files without reading them;
+ * the first call to size() or get() memory-maps both files, so any entry is read from its two offsets without
+ * parsing the rest of the file. Commands added after that are also kept in memory.<br><br>
+ * When opened with more than maxEntries entries, the files are compacted to the newest maxEntries, and again whenever
+ * adding commands doubles that - so they never hold more than twice maxEntries, and compacting costs a constant amount
+ * per command. Searches use a TrigramIndex, built by the first search.<br><br>
+ * Use open() to share a history file between consoles; each file should only be used by one program at a time.
+ * close() closes the files and drops their mappings.
+ *
+ * @author woodrow73
+ */
+public class MappedCommandHistory implements CommandHistory, Closeable {
+
+    /** The number of entries kept unless open() is given another limit */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final String INDEX_SUFFIX = ".idx", GENERATION_SUFFIX = ".gen", TEMP_SUFFIX = ".tmp";
+
+    /** The histories returned by open(), by the absolute path of their data file */
+    private static final Map<Path, MappedCommandHistory> openHistories = new HashMap<>();
+
+    /** The file given to open() - the data file of generation 0 */
+    private final Path basePath;
+
+    /** The files of the current generation - found when the files are first used */
+    private Path dataPath, indexPath;
+    private int generation;
+
+    /** The entry count at which the files are compacted next */
+    private int compactAt;
+
+    /** The maximum number of entries kept */
+    @Getter
+    private final int maxEntries;
+
+    /** Null until the files are first used */
+    private FileChannel data, index;
+
+    /** The length of the data file, and the number of entries in the files */
+    private long dataLength;
+    private int fileCount;
+
+    /** The files as they were on first read, and how many entries that was - null until then */
+    private MappedByteBuffer dataMap, indexMap;
+    private int mappedCount;
+
+    /** The commands added since the files were mapped */
+    private final List<String> added = new ArrayList<>();
+
+    /** Indexes the entries by number, from the oldest entry in the files - built by the first search */
+    private TrigramIndex searchIndex;
+
+    /** Reused to write offsets to the index file */
+    private final ByteBuffer offsetBuffer = ByteBuffer.allocate(Long.BYTES);
+
+    private boolean closed;
+
+    /**
+     * Gets the history that's kept in a file, creating it the first time the file is opened - consoles that open
+     * the same file share one history.
+     * @param file The data file; it and its index file are created when the first command is added.
+     * @param maxEntries The maximum number of entries to keep. Only used when the history is created - while it's
+     *                   open, the maxEntries of later calls for the same file are ignored.
+     * @return The history of the file.
+     * @throws IllegalArgumentException if maxEntries isn't positive.
+     */
+    public static MappedCommandHistory open(Path file, int maxEntries) throws IllegalArgumentException {
+        synchronized(openHistories) {
+            return openHistories.computeIfAbsent(file.toAbsolutePath().normalize(),
+                    path -> new MappedCommandHistory(path, maxEntries));
+        }
+    }
+
+    /** @see #open(Path, int) */
+    public static MappedCommandHistory open(Path file) {
+        return open(file, DEFAULT_MAX_ENTRIES);
+    }
+
+    private MappedCommandHistory(Path basePath, int maxEntries) throws IllegalArgumentException {
+        if(maxEntries < 1)
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        this.basePath = basePath;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Appends a command to the files. Line breaks in the command are replaced with spaces.
+     * @throws UncheckedIOException if the files can't be written.
+     */
+    @Override
+    public synchronized void add(String command) throws UncheckedIOException {
+        command = command.replace('\n', ' ').replace('\r', ' ');
+        try {
+            openFiles();
+            byte[] bytes = (command + '\n').getBytes(StandardCharsets.UTF_8);
+            writeFully(data, ByteBuffer.wrap(bytes), dataLength);
+            dataLength += bytes.length;
+            writeOffset(fileCount, dataLength);
+            fileCount++;
+
+            if(fileCount >= compactAt) {
+                compactWhileOpen();
+                return;
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if(dataMap != null)
+            added.add(command);
+        if(searchIndex != null)
+            searchIndex.add(command);
+    }
+
+    /**
+     * Closes the files and drops their mappings, and removes this history from the ones open() returns - so the next
+     * open() of the file creates a new one. Using this history afterwards throws an IllegalStateException.
+     * @throws UncheckedIOException if the files can't be closed.
+     */
+    @Override
+    public void close() throws UncheckedIOException {
+        synchronized(openHistories) {
+            openHistories.remove(basePath, this);
+        }
+
+        synchronized(this) {
+            closed = true;
+            unmap();
+            try {
+                if(data != null)
+                    data.close();
+                if(index != null)
+                    index.close();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                data = null;
+                index = null;
+            }
+        }
+    }
+
+    /** @throws UncheckedIOException if the files can't be read. */
+    @Override
+    public synchronized int size() throws UncheckedIOException {
+        map();
+        return Math.min(mappedCount + added.size(), maxEntries);
+    }
+
+    /** @throws UncheckedIOException if the files can't be read. */
+    @Override
+    public synchronized String get(int index) throws IndexOutOfBoundsException, UncheckedIOException {
+        int size = size();
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " of a history of size " + size);
+
+        return getEntry(mappedCount + added.size() - size + index);
+    }
+
+    /** @throws UncheckedIOException if the files can't be read. */
+    @Override
+    public synchronized int search(String query, int before) throws UncheckedIOException {
+        int size = size();
+        int first = mappedCount + added.size() - size; // the number of the entry at index 0
+        if(searchIndex == null) {
+            searchIndex = new TrigramIndex();
+            for(int entry = 0; entry < mappedCount + added.size(); entry++)
+                searchIndex.add(getEntry(entry));
+        }
+
+        int entry = searchIndex.search(query, first, first + Math.min(before, size));
+        return entry == -1 ? -1 : entry - first;
+    }
+
+    /** @return The command of an entry, numbered from the oldest entry in the files. */
+    private String getEntry(int entry) {
+        if(entry >= mappedCount)
+            return added.get(entry - mappedCount);
+
+        int start = entry == 0 ? 0 : (int) indexMap.getLong((entry - 1) * Long.BYTES);
+        int end = (int) indexMap.getLong(entry * Long.BYTES) - 1; // without the line break
+        byte[] bytes = new byte[end - start];
+        ((ByteBuffer) dataMap.duplicate().position(start)).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Memory-maps the files the first time they're read. */
+    private void map() throws UncheckedIOException {
+        if(dataMap != null)
+            return;
+        if(closed)
+            throw new IllegalStateException("History closed: " + basePath);
+
+        try {
+            openFiles();
+            dataMap = data.map(FileChannel.MapMode.READ_ONLY, 0, dataLength);
+            indexMap = index.map(FileChannel.MapMode.READ_ONLY, 0, (long) fileCount * Long.BYTES);
+            mappedCount = fileCount;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Opens the files the first time they're used, repairing the index if the program stopped while writing them,
+     * and compacting them if they hold more than maxEntries entries.
+     */
+    private void openFiles() throws IOException {
+        if(data != null)
+            return;
+        if(closed)
+            throw new IllegalStateException("History closed: " + basePath);
+
+        findGeneration();
+        openChannels();
+        repair();
+        compactAt = (int) Math.min(Integer.MAX_VALUE, 2L * maxEntries);
+        if(fileCount > maxEntries)
+            tryCompact();
+    }
+
+    /**
+     * Compacts the files once they hold twice maxEntries entries, dropping the mappings and the entries read from them
+     * first - they're numbered from the oldest entry in the files, which changes.
+     */
+    private void compactWhileOpen() throws IOException {
+        unmap();
+        searchIndex = null;
+        tryCompact();
+    }
+
+    /**
+     * Compacts the files into the next generation and switches to it. If that fails, carries on with the current
+     * files, and waits for another maxEntries entries before trying again - rather than copying the history on every
+     * add().
+     */
+    private void tryCompact() throws IOException {
+        try {
+            compact();
+        } catch(IOException e) {
+            e.printStackTrace();
+            compactAt = (int) Math.min(Integer.MAX_VALUE, (long) fileCount + maxEntries);
+        } finally {
+            data.close();
+            index.close();
+            openChannels();
+            repair();
+        }
+    }
+
+    /**
+     * Finds the newest generation of the files, and deletes the older ones - they're left behind when a program
+     * stops right after compacting, or when they were still mapped at the time.
+     */
+    private void findGeneration() throws IOException {
+        Path directory = basePath.getParent();
+        String prefix = basePath.getFileName() + GENERATION_SUFFIX;
+        List<Integer> generations = new ArrayList<>();
+        generations.add(0);
+        if(directory != null && Files.isDirectory(directory)) {
+            try(DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                    file -> file.getFileName().toString().startsWith(prefix))) {
+                for(Path file : files) {
+                    String suffix = file.getFileName().toString().substring(prefix.length());
+                    if(!suffix.isEmpty() && suffix.length() < 10 && suffix.chars().allMatch(Character::isDigit))
+                        generations.add(Integer.parseInt(suffix));
+                }
+            }
+        }
+
+        setGeneration(Collections.max(generations));
+        for(int old : generations) {
+            if(old != generation)
+                deleteGeneration(old);
+        }
+    }
+
+    private void setGeneration(int generation) {
+        this.generation = generation;
+        dataPath = getDataPath(generation);
+        indexPath = getIndexPath(dataPath);
+    }
+
+    /** @return The data file of a generation. */
+    private Path getDataPath(int generation) {
+        return generation == 0 ? basePath :
+                basePath.resolveSibling(basePath.getFileName() + GENERATION_SUFFIX + generation);
+    }
+
+    private static Path getIndexPath(Path dataPath) {
+        return dataPath.resolveSibling(dataPath.getFileName() + INDEX_SUFFIX);
+    }
+
+    /** Deletes the files of a generation if it can - they stay if they're still mapped on systems that forbid it. */
+    private void deleteGeneration(int generation) {
+        Path data = getDataPath(generation);
+        try {
+            Files.deleteIfExists(data);
+            Files.deleteIfExists(getIndexPath(data));
+        } catch(IOException e) {
+            // deleted by the next open() instead
+        }
+    }
+
+    /** Drops the mappings of the files and the commands added since - the mappings are unmapped once collected. */
+    private void unmap() {
+        dataMap = null;
+        indexMap = null;
+        mappedCount = 0;
+        added.clear();
+    }
+
+    private void openChannels() throws IOException {
+        data = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /** Reads the entry count, then indexes any lines the index file is missing and drops a partly written line. */
+    private void repair() throws IOException {
+        fileCount = (int) (index.size() / Long.BYTES);
+        index.truncate((long) fileCount * Long.BYTES);
+        dataLength = fileCount == 0 ? 0 : readOffset(fileCount - 1);
+
+        if(dataLength > data.size()) { // the index doesn't match the data - rebuild it
+            fileCount = 0;
+            dataLength = 0;
+            index.truncate(0);
+        }
+
+        // each line after the last indexed one was written, but its offset wasn't
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = dataLength;
+        while(data.read(buffer, position) > 0) {
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                position++;
+                if(buffer.get() == '\n') {
+                    dataLength = position;
+                    writeOffset(fileCount, dataLength);
+                    fileCount++;
+                }
+            }
+            buffer.clear();
+        }
+        data.truncate(dataLength);
+    }
+
+    /**
+     * Writes the newest maxEntries entries to the files of the next generation and switches to it. The data file is
+     * moved into place before the index file - if the program stops in between, the new generation has no index yet,
+     * so repair() builds it from the data.
+     */
+    private void compact() throws IOException {
+        int first = fileCount - maxEntries;
+        long start = readOffset(first - 1);
+
+        int previous = generation;
+        Path nextData = getDataPath(previous + 1), nextIndex = getIndexPath(nextData);
+        Path dataTemp = nextData.resolveSibling(nextData.getFileName() + TEMP_SUFFIX),
+                indexTemp = nextIndex.resolveSibling(nextIndex.getFileName() + TEMP_SUFFIX);
+
+        try(FileChannel out = FileChannel.open(dataTemp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for(long position = start; position < dataLength; )
+                position += data.transferTo(position, dataLength - position, out);
+        }
+
+        ByteBuffer offsets = ByteBuffer.allocate(maxEntries * Long.BYTES);
+        for(int i = first; i < fileCount; i++)
+            offsets.putLong(readOffset(i) - start);
+        offsets.flip();
+        try(FileChannel out = FileChannel.open(indexTemp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, offsets, 0);
+        }
+
+        Files.move(dataTemp, nextData, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try {
+            Files.move(indexTemp, nextIndex, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(IOException e) {
+            Files.deleteIfExists(nextData); // or the next open() would switch to it, without the entries added since
+            throw e;
+        }
+        setGeneration(previous + 1);
+        compactAt = (int) Math.min(Integer.MAX_VALUE, 2L * maxEntries);
+
+        data.close();
+        index.close();
+        deleteGeneration(previous);
+    }
+
+    /** @return The offset just past the line of an entry. */
+    private long readOffset(int entry) throws IOException {
+        offsetBuffer.clear();
+        long position = (long) entry * Long.BYTES;
+        while(offsetBuffer.hasRemaining() && index.read(offsetBuffer, position + offsetBuffer.position()) > 0);
+        return offsetBuffer.getLong(0);
+    }
+
+    private void writeOffset(int entry, long offset) throws IOException {
+        offsetBuffer.clear();
+        offsetBuffer.putLong(offset).flip();
+        writeFully(index, offsetBuffer, (long) entry * Long.BYTES);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.bennavetta.jconsole.history;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A CommandHistory kept in memory, lost when the program exits - the history of a Console unless it's given another.
+ * Searches use a TrigramIndex, built by the first search.
+ *
+ * @author woodrow73
+ */
+public class MemoryCommandHistory implements CommandHistory {
+
+    private final List<String> commands = new ArrayList<>();
+
+    /** Built by the first search, then kept up to date by add() */
+    private TrigramIndex searchIndex;
+
+    @Override
+    public synchronized void add(String command) {
+        commands.add(command);
+        if(searchIndex != null)
+            searchIndex.add(command);
+    }
+
+    @Override
+    public synchronized int size() {
+        return commands.size();
+    }
+
+    @Override
+    public synchronized String get(int index) throws IndexOutOfBoundsException {
+        return commands.get(index);
+    }
+
+    @Override
+    public synchronized int search(String query, int before) {
+        if(searchIndex == null) {
+            searchIndex = new TrigramIndex();
+            commands.forEach(searchIndex::add);
+        }
+        return searchIndex.search(query, 0, before);
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.bennavetta.jconsole.history;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * An index of the entries of a history by the trigrams (sequences of 3 characters) they contain, ignoring case -
+ * so a search only checks the entries that contain every trigram of the query, newest first.<br>
+ * Entries are numbered in the order they're added; each trigram maps to the ascending list of entries that contain
+ * it, so adding an entry only appends to the lists of its own trigrams. The index keeps each entry in lower case too,
+ * to confirm matches and scan for queries shorter than a trigram without decoding entries from the history.
+ *
+ * @author woodrow73
+ */
+class TrigramIndex {
+
+    /** The entries containing a trigram, in ascending order */
+    private static class Postings {
+        int[] entries = new int[4];
+        int size;
+
+        void add(int entry) {
+            if(size > 0 && entries[size - 1] == entry)
+                return; // the trigram appears more than once in the entry
+            if(size == entries.length)
+                entries = Arrays.copyOf(entries, size * 2);
+            entries[size++] = entry;
+        }
+
+        boolean contains(int entry) {
+            return Arrays.binarySearch(entries, 0, size, entry) >= 0;
+        }
+    }
+
+    /** An open-addressing table from trigram to its postings, so adding an entry doesn't box each trigram */
+    private long[] trigrams = new long[1024];
+    private Postings[] postings = new Postings[1024];
+    private int trigramCount;
+
+    /** The entries in lower case, by number */
+    private String[] lowerEntries = new String[16];
+
+    /** The number of entries added - the number of the next entry */
+    private int count;
+
+    /** @return The number of entries added. */
+    int getCount() {
+        return count;
+    }
+
+    /** Adds an entry, numbered getCount(). */
+    void add(String entry) {
+        String lower = entry.toLowerCase(Locale.ROOT);
+        for(int i = 0; i + 3 <= lower.length(); i++)
+            getOrCreatePostings(trigram(lower, i)).add(count);
+
+        if(count == lowerEntries.length)
+            lowerEntries = Arrays.copyOf(lowerEntries, count * 2);
+        lowerEntries[count++] = lower;
+    }
+
+    /**
+     * Finds the newest entry in a range that contains the query, ignoring case.
+     * @param query The text to search for.
+     * @param first The number of the oldest entry to search.
+     * @param before The number of the entry to search before.
+     * @return The number of the newest matching entry, or -1 if there's none.
+     */
+    int search(String query, int first, int before) {
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        before = Math.min(before, count);
+
+        if(lowerQuery.length() < 3) { // no trigram to look up - short queries match often, so check newest first
+            for(int entry = before - 1; entry >= first; entry--) {
+                if(lowerEntries[entry].contains(lowerQuery))
+                    return entry;
+            }
+            return -1;
+        }
+
+        Postings[] lists = new Postings[lowerQuery.length() - 2];
+        for(int i = 0; i < lists.length; i++) {
+            lists[i] = getPostings(trigram(lowerQuery, i));
+            if(lists[i] == null)
+                return -1;
+        }
+        // walk the rarest trigram's entries, checking the others only for those
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        Postings rarest = lists[0];
+
+        int position = Arrays.binarySearch(rarest.entries, 0, rarest.size, before);
+        position = position >= 0 ? position - 1 : -position - 2;
+        for(; position >= 0 && rarest.entries[position] >= first; position--) {
+            int entry = rarest.entries[position];
+            if(containsAll(lists, entry) && lowerEntries[entry].contains(lowerQuery))
+                return entry;
+        }
+        return -1;
+    }
+
+    /** @return The postings of a trigram, or null if no entry contains it. */
+    private Postings getPostings(long trigram) {
+        for(int slot = slot(trigram, trigrams.length); postings[slot] != null; slot = (slot + 1) & (trigrams.length - 1)) {
+            if(trigrams[slot] == trigram)
+                return postings[slot];
+        }
+        return null;
+    }
+
+    private Postings getOrCreatePostings(long trigram) {
+        int slot = slot(trigram, trigrams.length);
+        for(; postings[slot] != null; slot = (slot + 1) & (trigrams.length - 1)) {
+            if(trigrams[slot] == trigram)
+                return postings[slot];
+        }
+
+        Postings created = new Postings();
+        trigrams[slot] = trigram;
+        postings[slot] = created;
+        if(++trigramCount > trigrams.length / 2)
+            grow();
+        return created;
+    }
+
+    /** Doubles the size of the table, so it's never more than half full. */
+    private void grow() {
+        long[] oldTrigrams = trigrams;
+        Postings[] oldPostings = postings;
+        trigrams = new long[oldTrigrams.length * 2];
+        postings = new Postings[oldPostings.length * 2];
+
+        for(int i = 0; i < oldPostings.length; i++) {
+            if(oldPostings[i] == null)
+                continue;
+            int slot = slot(oldTrigrams[i], trigrams.length);
+            while(postings[slot] != null)
+                slot = (slot + 1) & (trigrams.length - 1);
+            trigrams[slot] = oldTrigrams[i];
+            postings[slot] = oldPostings[i];
+        }
+    }
+
+    private static int slot(long trigram, int tableLength) {
+        long hash = trigram * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (tableLength - 1);
+    }
+
+    private static boolean containsAll(Postings[] lists, int entry) {
+        for(int i = 1; i < lists.length; i++) {
+            if(!lists[i].contains(entry))
+                return false;
+        }
+        return true;
+    }
+
+    private static long trigram(String s, int start) {
+        return (long) s.charAt(start) << 32 | (long) s.charAt(start + 1) << 16 | s.charAt(start + 2);
+    }
+
+}
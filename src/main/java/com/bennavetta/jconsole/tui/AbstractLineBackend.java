@@ -0,0 +1,89 @@
+package com.bennavetta.jconsole.tui;
+
+import com.bennavetta.jconsole.tui.console.Console;
+import com.bennavetta.jconsole.tui.console.StyledRun;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Base class of the TuiBackends without a Swing Console, whose input arrives as whole lines - HeadlessBackend and
+ * AnsiTerminalBackend.<br>
+ * Keeps the selected settings, the input log and handoff, and the async output queue, and processes each line the
+ * subclass reads the way the Swing console does when the user presses enter. Input processors receive a null Console.
+ *
+ * @author woodrow73
+ */
+public abstract class AbstractLineBackend implements TuiBackend {
+
+    /** The settings currently applied to this console */
+    @Getter
+    protected volatile TuiParent currentSettings;
+
+    /** Unique identifier for this console - the key of its log inside Tui.allUserInputLogs */
+    @Getter
+    private final int uniqueID = TuiParent.createInputLog(InputLog.DEFAULT_CAPACITY);
+
+    /** Hands each line of input to the Tui objects waiting in nextLine() */
+    @Getter
+    private final InputHandoff input = new InputHandoff();
+
+    /** Queue of output from Tui objects in async output mode - created by the first such Tui for this console */
+    protected volatile AsyncOutputQueue outputQueue;
+
+    /** The prompt printed after each line is processed. Guarded by this. */
+    protected String prompt = "";
+
+    /**
+     * Flushes the output queued by the previously selected Tui, then selects the settings - the subclass applies the
+     * rest of them afterwards.
+     * @return Whether these are the first settings applied to this console.
+     */
+    protected boolean selectSettings(TuiParent settings) {
+        // output queued by the previously selected Tui is printed with its settings
+        if(outputQueue != null)
+            TuiParent.invokeAndWait(outputQueue::flush);
+
+        synchronized(this) {
+            boolean firstSettings = currentSettings == null;
+            if(firstSettings && settings.getInputLogCapacity() != InputLog.DEFAULT_CAPACITY) // sized by the first Tui
+                Tui.allUserInputLogs.put(uniqueID, new InputLog(settings.getInputLogCapacity()));
+            currentSettings = settings;
+            prompt = settings.getPrompt();
+            return firstSettings;
+        }
+    }
+
+    /**
+     * Hands a line of input to any Tui waiting for input and processes it with the selected Tui,
+     * then prints the prompt again.
+     * @param line The line, without its line break.
+     */
+    protected void processLine(String line) {
+        String raw = line.trim();
+        Tui.allUserInputLogs.get(uniqueID).add(raw);
+        input.offer(raw);
+
+        TuiParent settings = currentSettings;
+        if(settings != null)
+            settings.processInput(null, raw, Console.parseLine(raw));
+
+        // print queued output from the commands before the next prompt
+        if(outputQueue != null)
+            TuiParent.invokeAndWait(outputQueue::flush);
+
+        String prompt;
+        synchronized(this) {
+            prompt = this.prompt;
+        }
+        print(List.of(new StyledRun(null, prompt)));
+    }
+
+    @Override
+    public synchronized AsyncOutputQueue getOutputQueue(OutputBackpressure backpressure, int capacity, int flushIntervalMS) {
+        if(outputQueue == null)
+            outputQueue = new AsyncOutputQueue(this, backpressure, capacity, flushIntervalMS);
+        return outputQueue;
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.bennavetta.jconsole.tui;
+
+import com.bennavetta.jconsole.tui.console.StyledRun;
+import com.bennavetta.jconsole.util.ColorUtil;
+import lombok.Getter;
+
+import java.awt.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A TuiBackend that prints to a real terminal (e.g. over SSH) with ANSI escape sequences, without any Swing
+ * components.<br><br>
+ * Each print call is built in one reused buffer, encoded to UTF-8 into another and written with a single write and
+ * flush. A color code is written before the first colored text of a message, and the attributes are reset after it -
+ * so the terminal isn't left colored by an interrupted program, or for output that doesn't come from this backend.
+ * A shutdown hook resets them too. Lines are read from the input stream on a daemon thread and processed like the
+ * Swing console does when the user presses enter - the terminal echoes them itself. Input processors receive a null
+ * Console. Background colors and scrollback limits are left to the terminal.
+ *
+ * @author woodrow73
+ */
+public class AnsiTerminalBackend extends AbstractLineBackend {
+
+    /** Resets the colors and other attributes of the terminal */
+    private static final String RESET = "\u001B[0m";
+
+    /** How colors are written to the terminal */
+    public enum ColorMode {
+        /** 24-bit ESC[38;2;r;g;bm codes - exact colors */
+        TRUECOLOR,
+        /** ESC[38;5;nm codes with the closest color of the xterm 256-color palette */
+        XTERM_256,
+        /** The closest of the 16 basic colors, from ColorUtil.ansiColorMap */
+        ANSI_16
+    }
+
+    @Getter
+    private final ColorMode colorMode;
+
+    private final OutputStream out;
+
+    private final BufferedReader in;
+
+    /** Reused to build each print call. Guarded by this. */
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    /** Reused to encode the buffer. Guarded by this. */
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer bytes = ByteBuffer.allocate(1024);
+
+    /** The color of the text printed next */
+    private Color foreground = Color.white;
+
+    /** The color the terminal was set to in the message being written, or null if it hasn't been set yet */
+    private Color writtenColor;
+
+    private Thread reader;
+
+    /** Prints to stdout and reads from stdin - in truecolor if $COLORTERM says the terminal supports it. */
+    public AnsiTerminalBackend() {
+        this(new FileOutputStream(FileDescriptor.out), System.in, detectColorMode());
+    }
+
+    /**
+     * @param out Where to print the output - written once per print call, so it doesn't need to be buffered.
+     * @param in Where to read the user's input lines from.
+     * @param colorMode How to write colors.
+     */
+    public AnsiTerminalBackend(OutputStream out, InputStream in, ColorMode colorMode) {
+        this.out = out;
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.colorMode = colorMode;
+    }
+
+    /** @return TRUECOLOR if the COLORTERM environment variable is 'truecolor' or '24bit', otherwise XTERM_256. */
+    public static ColorMode detectColorMode() {
+        String colorTerm = System.getenv("COLORTERM");
+        return "truecolor".equalsIgnoreCase(colorTerm) || "24bit".equalsIgnoreCase(colorTerm) ?
+                ColorMode.TRUECOLOR : ColorMode.XTERM_256;
+    }
+
+    @Override
+    public void setConsoleSettings(TuiParent settings, boolean setBackground) {
+        boolean firstSettings = selectSettings(settings);
+        synchronized(this) {
+            foreground = settings.getDefaultForegroundColor();
+        }
+
+        if(firstSettings) { // start with the prompt, then start reading input
+            Runtime.getRuntime().addShutdownHook(new Thread(this::resetAttributes, "AnsiTerminalBackend-reset"));
+            print(List.of(new StyledRun(null, prompt)));
+            startReader();
+        }
+    }
+
+    @Override
+    public synchronized void print(List<StyledRun> runs) {
+        buffer.setLength(0);
+        for(StyledRun run : runs) {
+            if(run.getColor() != null)
+                foreground = run.getColor();
+            if(run.getText().isEmpty())
+                continue;
+
+            if(!foreground.equals(writtenColor)) {
+                appendColor(foreground);
+                writtenColor = foreground;
+            }
+            buffer.append(run.getText());
+        }
+
+        if(buffer.length() == 0)
+            return;
+        if(writtenColor != null) {
+            buffer.append(RESET);
+            writtenColor = null;
+        }
+
+        try {
+            writeBuffer();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Encodes the buffer and writes it with a single write and flush. */
+    private void writeBuffer() throws IOException {
+        int maxBytes = (int) Math.ceil(buffer.length() * (double) encoder.maxBytesPerChar());
+        if(bytes.capacity() < maxBytes)
+            bytes = ByteBuffer.allocate(Math.max(maxBytes, bytes.capacity() * 2));
+
+        bytes.clear();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(buffer), bytes, true);
+        encoder.flush(bytes);
+        out.write(bytes.array(), 0, bytes.position());
+        out.flush();
+    }
+
+    /** Resets the terminal's attributes, in case the program is stopped while a message is being written. */
+    private synchronized void resetAttributes() {
+        buffer.setLength(0);
+        buffer.append(RESET);
+        writtenColor = null;
+        try {
+            writeBuffer();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Appends the escape sequence that sets the foreground color to the buffer. */
+    private void appendColor(Color color) {
+        switch(colorMode) {
+            case TRUECOLOR:
+                buffer.append("\u001B[38;2;").append(color.getRed()).append(';').append(color.getGreen())
+                        .append(';').append(color.getBlue()).append('m');
+                break;
+            case XTERM_256:
+                buffer.append("\u001B[38;5;").append(ColorUtil.colorToXterm256(color)).append('m');
+                break;
+            case ANSI_16:
+                buffer.append(ColorUtil.colorToANSI(color));
+                break;
+        }
+    }
+
+    /** Starts the daemon thread that processes each line read from the input stream. */
+    private synchronized void startReader() {
+        if(reader != null)
+            return;
+
+        reader = new Thread(() -> {
+            try {
+                String line;
+                while((line = in.readLine()) != null)
+                    processLine(line);
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }, "AnsiTerminalBackend-input");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public synchronized void setForeground(Color color) {
+        foreground = color;
+    }
+
+    @Override
+    public synchronized Color getDisplayedForeground() {
+        return foreground;
+    }
+
+    /** Ignored - the terminal's background is left as it is. */
+    @Override
+    public void setBackgroundTransitions(int durationMS, Color... colors) {}
+
+}
@@ -0,0 +1,145 @@
+package com.bennavetta.jconsole.tui;
+
+import com.bennavetta.jconsole.tui.console.StyledRun;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queue of messages waiting to be printed to a console in async output mode.<br>
+ * Any number of threads can offer messages without waiting on the EDT; a Swing Timer drains the queue about once
+ * per frame and prints everything that's queued with a single TuiBackend.print() call.
+ *
+ * @author woodrow73
+ */
+public class AsyncOutputQueue {
+
+    /** The default time between flushes in milliseconds - about one frame at 60Hz. */
+    public static final int DEFAULT_FLUSH_INTERVAL_MS = 16;
+
+    private final TuiBackend backend;
+
+    /** Lock-free multi-producer queue of messages; each message is the list of runs from one print call. */
+    private final ConcurrentLinkedQueue<List<StyledRun>> messages = new ConcurrentLinkedQueue<>();
+
+    /** The number of messages in the queue, tracked separately since ConcurrentLinkedQueue.size() is O(n) */
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    private final OutputBackpressure backpressure;
+
+    private final int capacity;
+
+    /** Free slots in the queue when backpressure is BLOCK, otherwise null */
+    private final Semaphore freeSlots;
+
+    /** Single-shot timer that flushes the queue on the EDT. */
+    private final Timer flusher;
+
+    /** Whether the flusher has been started and hasn't run yet */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /**
+     * @param backend The console to print to.
+     * @param backpressure What to do when the queue is full.
+     * @param capacity The maximum number of queued messages (ignored for OutputBackpressure.GROW).
+     * @param flushIntervalMS How long the first message in an empty queue waits before being printed.
+     * @throws IllegalArgumentException if the capacity isn't positive for a bounded queue.
+     */
+    public AsyncOutputQueue(TuiBackend backend, OutputBackpressure backpressure, int capacity, int flushIntervalMS)
+            throws IllegalArgumentException {
+        if(capacity < 1 && backpressure != OutputBackpressure.GROW)
+            throw new IllegalArgumentException("Async output queue capacity must be positive: " + capacity);
+
+        this.backend = backend;
+        this.backpressure = backpressure;
+        this.capacity = capacity;
+        this.freeSlots = backpressure == OutputBackpressure.BLOCK ? new Semaphore(capacity) : null;
+
+        flusher = new Timer(flushIntervalMS, e -> flush());
+        flusher.setRepeats(false);
+        flusher.setCoalesce(true);
+    }
+
+    /**
+     * Queues a message to be printed on the next flush. Safe to call from any thread - on the EDT, a full BLOCK queue
+     * isn't waited on, since only the EDT frees its slots: the queued messages and then this one are printed at once.
+     * @param runs The runs of the message, in order.
+     */
+    public void offer(List<StyledRun> runs) {
+        switch(backpressure) {
+            case BLOCK:
+                if(!freeSlots.tryAcquire()) {
+                    if(SwingUtilities.isEventDispatchThread()) {
+                        // the slots may all be reserved by producers that haven't queued yet, so flushing can't
+                        // be relied on to free one - bypass the queue instead
+                        flush();
+                        backend.print(runs);
+                        return;
+                    }
+                    freeSlots.acquireUninterruptibly();
+                }
+                size.incrementAndGet();
+                break;
+            case DROP_OLDEST:
+                reserveDroppingOldest();
+                break;
+            case GROW:
+                size.incrementAndGet();
+                break;
+        }
+
+        messages.offer(runs);
+
+        if(flushScheduled.compareAndSet(false, true))
+            flusher.start();
+    }
+
+    /**
+     * Reserves a slot for a message, counting it in size before it's queued - if the queue is full, the slot of the
+     * oldest message is taken over by dropping it. A CAS on size keeps producers from overshooting the capacity.
+     */
+    private void reserveDroppingOldest() {
+        while(true) {
+            int current = size.get();
+            if(current < capacity) {
+                if(size.compareAndSet(current, current + 1))
+                    return;
+            }
+            else if(messages.poll() != null) {
+                return; // size is unchanged: the dropped message's slot is this message's
+            }
+            else {
+                Thread.onSpinWait(); // the slots are reserved by producers that haven't queued their message yet
+            }
+        }
+    }
+
+    /** Prints every queued message to the console with one TuiBackend.print() call. Must be called on the EDT. */
+    public void flush() {
+        flushScheduled.set(false);
+
+        List<StyledRun> runs = new ArrayList<>();
+        List<StyledRun> message;
+        int drained = 0;
+        while((message = messages.poll()) != null) {
+            runs.addAll(message);
+            drained++;
+        }
+
+        if(drained == 0)
+            return;
+
+        size.addAndGet(-drained);
+        if(freeSlots != null)
+            freeSlots.release(drained);
+
+        backend.print(runs);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.bennavetta.jconsole.tui;
+
+import com.bennavetta.jconsole.util.ColorUtil;
+import com.bennavetta.jconsole.util.Gradient;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Animates the background colors of consoles, all from one javax.swing.Timer on the EDT - so any number of consoles
+ * can transition at once without a thread each.<br>
+ * Each component has a queue of colors it transitions through, one after another - precomputed as one Gradient from
+ * its background, with a step per frame. A frame only picks the step for the time elapsed and sets its cached Color,
+ * so it does no color math and allocates nothing. The timer stops while nothing is animating.<br>
+ * Package-private
+ *
+ * @author woodrow73
+ */
+final class BackgroundAnimator {
+
+    /** The time between frames in milliseconds */
+    static final int FRAME_INTERVAL_MS = 13;
+
+    /** The queues of the components being animated - only used on the EDT */
+    private static final List<Animation> animations = new ArrayList<>();
+
+    private static final Timer timer = new Timer(FRAME_INTERVAL_MS, e -> tick());
+
+    static {
+        timer.setCoalesce(true);
+    }
+
+    /** A component's transitions, as one gradient from its background through its queue of colors */
+    private static final class Animation {
+        final JComponent component;
+        final Gradient gradient;
+        final long startNanos, durationNanos;
+
+        /** The step of the gradient last set, so unchanged frames aren't set again */
+        int lastStep;
+
+        Animation(JComponent component, Gradient gradient, long startNanos, long durationNanos) {
+            this.component = component;
+            this.gradient = gradient;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+
+        /** @return Whether the last transition has finished. */
+        boolean step(long now) {
+            int last = gradient.size() - 1;
+            long elapsed = now - startNanos;
+            int step = durationNanos <= 0 || elapsed >= durationNanos ? last : (int) (elapsed * last / durationNanos);
+            if(step != lastStep) {
+                component.setBackground(gradient.getColor(step));
+                lastStep = step;
+            }
+            return step == last;
+        }
+    }
+
+    private BackgroundAnimator() {}
+
+    /**
+     * Stops the component's transitions, then transitions its background through the colors - one after another.
+     * Safe to call from any thread.
+     * @param component The component to animate.
+     * @param durationMS The duration of each transition in milliseconds.
+     * @param colors The colors to transition to, in order - none to just stop the transitions.
+     */
+    static void setTransitions(JComponent component, int durationMS, Color... colors) {
+        Color[] stops = new Color[colors.length + 1];
+        System.arraycopy(colors, 0, stops, 1, colors.length);
+        int steps = Math.max(1, Math.round(durationMS / (float) FRAME_INTERVAL_MS));
+
+        onEDT(() -> {
+            remove(component);
+            if(colors.length == 0)
+                return;
+
+            stops[0] = component.getBackground();
+            animations.add(new Animation(component, ColorUtil.gradient(steps, stops), System.nanoTime(),
+                    (long) durationMS * colors.length * 1_000_000L));
+            if(!timer.isRunning())
+                timer.start();
+        });
+    }
+
+    /** Advances every animation by a frame. */
+    private static void tick() {
+        long now = System.nanoTime();
+        for(int i = animations.size() - 1; i >= 0; i--) {
+            if(animations.get(i).step(now))
+                animations.remove(i);
+        }
+        if(animations.isEmpty())
+            timer.stop();
+    }
+
+    private static void remove(JComponent component) {
+        animations.removeIf(animation -> animation.component == component);
+    }
+
+    private static void onEDT(Runnable runnable) {
+        if(SwingUtilities.isEventDispatchThread())
+            runnable.run();
+        else
+            SwingUtilities.invokeLater(runnable);
+    }
+
+}
@@ -1,45 +1,32 @@
 package com.bennavetta.jconsole.tui;
 
-import com.bennavetta.jconsole.completion.DefaultCompletionSource;
-import com.bennavetta.jconsole.commands.InputProcessor;
 import com.bennavetta.jconsole.tui.console.Console;
+import com.bennavetta.jconsole.tui.console.LineLayout;
+import com.bennavetta.jconsole.tui.console.StyledRun;
 import lombok.Getter;
 
 import javax.swing.*;
 import java.awt.*;
-import java.math.BigInteger;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Handles creation and handling of Console objects.<br>
+ * Handles creation and handling of Console objects - the Swing TuiBackend.<br>
  * One instance per console; There is only one ConsoleHandler per JFrame, but there can be multiple Tui objects per ConsoleHandler/JFrame<br>
  * Package-private
  * @author <a href="">woodrow73</a>
  */
-class ConsoleHandler {
+class ConsoleHandler implements TuiBackend {
 
     /** All instances; a one-to-one relationship of ConsoleHandler instances to JFrame instances (unique instances passed into Tui) */
     public static Map<JFrame, ConsoleHandler> instances = new LinkedHashMap<>();
 
-    /** A queue of background color transitions to make */
-    private ExecutorService backgroundTransitions = Executors.newSingleThreadExecutor();
-
-    /** Whether any tasks are currently being executed inside interruptingBackgroundTransitions */
-    private AtomicBoolean runningBackgroundTransitions = new AtomicBoolean(false);
-
-    /** The number of queued interruptingBackgroundTransitions tasks - when this hits 0,
-     * runningInterruptingBackgroundTransitions will be set to false */
-    private AtomicInteger backgroundTransitionTaskCounter = new AtomicInteger(0);
-
     /** The settings currently applied to this console */
     @Getter
     public TuiParent currentSettings;
 
-    /** Unique identifier for this instance of ConsoleHandler - the index inside ConsoleHandler.instances */
+    /** Unique identifier for this instance of ConsoleHandler - the key of its log inside Tui.allUserInputLogs */
     @Getter
     private final int uniqueID;
 
@@ -47,9 +34,16 @@ class ConsoleHandler {
     @Getter
     private Console console;
 
+    /** Hands each line the user enters to the Tui objects waiting in nextLine() */
+    @Getter
+    private final InputHandoff input = new InputHandoff();
+
     /** Whether the console's background color has been set at least once in this ConsoleHandler */
     private boolean backgroundHasBeenSet = false;
 
+    /** Queue of output from Tui objects in async output mode - created by the first such Tui for this console */
+    private volatile AsyncOutputQueue outputQueue;
+
     /**
      * Creates a Console object and adds it to the Tui's JFrame.<br>
      * There is only one ConsoleHandler per JFrame, but there can be multiple Tui objects per ConsoleHandler/JFrame
@@ -62,53 +56,68 @@ class ConsoleHandler {
             throw new IllegalStateException("ConsoleHandler already exists for this JFrame");
 
         instances.put(frame, this);
-        uniqueID = instances.size() - 1;
-        Tui.allUserInputLogs.put(uniqueID, new CopyOnWriteArrayList<>());
+        uniqueID = TuiParent.createInputLog(consoleSettings.getInputLogCapacity());
 
         console = new Console(consoleSettings.getBackgroundColor(), consoleSettings.getDefaultForegroundColor(),
                 consoleSettings.getFont(), consoleSettings.getPrompt(), true,
-                consoleSettings.getResetColorAfterEachMsg());
+                consoleSettings.getResetColorAfterEachMsg(), consoleSettings.getLineLayout());
 
         frame.add(console);
         frame.addComponentListener(console);
 
-        setConsoleSettings(consoleSettings, true);
+        applyConsoleSettings(consoleSettings, true);
     }
 
     /**
-     * Apply settings to the console.
+     * Apply settings to the console on the EDT.
      * @param consoleSettings The settings to apply.
      * @param setBackground Whether to set the background color of the console.
      */
+    @Override
     public void setConsoleSettings(TuiParent consoleSettings, boolean setBackground) {
+        TuiParent.invokeAndWait(() -> applyConsoleSettings(consoleSettings, setBackground));
+    }
+
+    /**
+     * Apply settings to the console.
+     * @param consoleSettings The settings to apply.
+     * @param setBackground Whether to set the background color of the console.
+     */
+    private void applyConsoleSettings(TuiParent consoleSettings, boolean setBackground) {
+        // output queued by the previously selected Tui is printed with its settings
+        if(outputQueue != null)
+            outputQueue.flush();
+
         this.currentSettings = consoleSettings;
-        Map<String, InputProcessor> commandMap = consoleSettings.getCommandMap();
 
         // in case a background transition was interrupted by a priority background transition, get the original color from the component itself
         Color originalColor = console.getTextPane().getBackground(),
                 newBackground = consoleSettings.getBackgroundColor();
 
         // String commands go here as well.
-        console.setCompletionSource(new DefaultCompletionSource(commandMap.keySet().stream().sorted().toArray(String[]::new)));
+        console.setCompletionSource(consoleSettings.getCompletionSource());
 
         console.setProcessors(consoleSettings.getProcessor(),
                 // handle commands
                 (Console console, String raw, String... args) -> {
                     // Log the user's input
                     Tui.allUserInputLogs.get(uniqueID).add(raw);
-                    consoleSettings.getProcessor().process(console, raw, args);
+                    input.offer(raw);
+                    consoleSettings.processInput(console, raw, args);
 
-                    // process commands and their arguments
-                    if (args.length > 0 && commandMap.containsKey(args[0].toLowerCase()))
-                        commandMap.get(args[0].toLowerCase()).process(console, raw, args);
-                    else
-                        consoleSettings.getProcessUnrecognizedCommand().process(console, raw, args);
+                    // print queued output from the commands before the next prompt
+                    if(outputQueue != null)
+                        TuiParent.invokeAndWait(outputQueue::flush);
                 });
 
         console.setConsoleForeground(consoleSettings.getDefaultForegroundColor());
         console.setPrompt(consoleSettings.getPrompt());
         console.setConsoleFont(consoleSettings.getFont());
         console.setResetColorAfterEachMsg(consoleSettings.getResetColorAfterEachMsg());
+        console.setScrollbackLimit(consoleSettings.getMaxScrollbackLines(), consoleSettings.getMaxScrollbackChars());
+        console.setCommandHistory(consoleSettings.getCommandHistory());
+        console.setProcessorExecutor(consoleSettings.getProcessorExecutor());
+        console.getTextPane().setRepaintInterval(consoleSettings.getRepaintIntervalMS());
 
         if(!backgroundHasBeenSet && setBackground) { // if the background has not been set yet, set it without transition
             console.getTextPane().setBackground(consoleSettings.getBackgroundColor());
@@ -124,66 +133,48 @@ class ConsoleHandler {
         }
     }
 
+    /** Prints a message to the console on the EDT, waiting for it to be printed. */
+    @Override
+    public void print(List<StyledRun> runs) {
+        TuiParent.invokeAndWait(() -> console.print(runs));
+    }
+
+    @Override
+    public void setForeground(Color color) {
+        TuiParent.invokeAndWait(() -> console.setConsoleForeground(color));
+    }
+
+    @Override
+    public Color getDisplayedForeground() {
+        return console.getTextPane().getForeground();
+    }
+
     /**
-     * Add a background color transition to the queue of tasks inside backgroundTransitions, the single thread executor.
-     * The background transitions will be stopped if a Tui object that's currently selected for this console calls
-     * setBackgroundColor, or if the Tui object currently selected for this console is switched.
-     * @param newColor The new background color.
+     * Gets the async output queue for this console, creating it if it doesn't exist yet.
+     * The queue is shared by all Tui objects of this console that use async output mode, so only the
+     * settings of the first one are used.
+     * @param backpressure What to do when the queue is full.
+     * @param capacity The maximum number of queued messages.
+     * @param flushIntervalMS The time between flushes in milliseconds.
+     * @return The console's async output queue.
      */
-    protected void addBackgroundTransitionToQueue(Color newColor, int durationMS) {
-        runningBackgroundTransitions.set(true);
-        backgroundTransitionTaskCounter.incrementAndGet();
-
-        backgroundTransitions.submit(() -> {
-            Color originalColor = console.getTextPane().getBackground();
-
-            long start = System.nanoTime();
-            BigInteger end = new BigInteger(String.valueOf(durationMS))
-                    .multiply(new BigInteger("1000000"))
-                    .add(new BigInteger(String.valueOf(start)));
-
-                    //end = start + (durationMS * 1000000);
-
-            // capped at 1 max; calculated from how close System.nanoTime() is to the 'end', relative to the 'start'
-            double transitionCompletionPercent = 0;
-
-            while(transitionCompletionPercent != 1) {
-                try {
-                    Thread.sleep(13);
-                } catch(InterruptedException e) {
-                    return; // if backgroundTransitions.shutdownNow() is called
-                }
-
-                transitionCompletionPercent = Math.min(1, (System.nanoTime() - start) / Double.parseDouble(
-                            end.subtract(new BigInteger(String.valueOf(start))).toString()));
-                Color shadeBetweenColors = new Color(
-                        (int)((newColor.getRed() - originalColor.getRed()) * transitionCompletionPercent + originalColor.getRed()),
-                        (int)((newColor.getGreen() - originalColor.getGreen()) * transitionCompletionPercent + originalColor.getGreen()),
-                        (int)((newColor.getBlue() - originalColor.getBlue()) * transitionCompletionPercent + originalColor.getBlue()));
-
-                try {
-                    SwingUtilities.invokeAndWait(() -> console.getTextPane().setBackground(shadeBetweenColors) );
-                } catch(InterruptedException e) {
-                    return; // if backgroundTransitions.shutdownNow() is called
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-
-            runningBackgroundTransitions.set(0 == backgroundTransitionTaskCounter.decrementAndGet());
-        });
+    @Override
+    public synchronized AsyncOutputQueue getOutputQueue(OutputBackpressure backpressure, int capacity, int flushIntervalMS) {
+        if(outputQueue == null)
+            outputQueue = new AsyncOutputQueue(this, backpressure, capacity, flushIntervalMS);
+        return outputQueue;
     }
 
     /**
-     * Removes and stops all tasks inside backgroundTransitions, then submits new background transition tasks to the queue.
+     * Stops the console's background transitions, then transitions its background through the colors. The
+     * transitions are stopped by the next call - e.g. when a Tui object that's currently selected for this console
+     * calls setBackgroundColor, or the Tui object currently selected for this console is switched.
      * @param colors The colors to cycle through.
      * @param durationMS The duration of each transition in milliseconds.
      */
-    protected void setBackgroundTransitions(int durationMS, Color... colors) {
-        backgroundTransitions.shutdownNow();
-        backgroundTransitions = Executors.newSingleThreadExecutor();
-        for(Color color : colors)
-            addBackgroundTransitionToQueue(color, durationMS);
+    @Override
+    public void setBackgroundTransitions(int durationMS, Color... colors) {
+        BackgroundAnimator.setTransitions(console.getTextPane(), durationMS, colors);
     }
 
 }
\ No newline at end of file
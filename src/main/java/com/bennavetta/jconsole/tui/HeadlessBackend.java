@@ -0,0 +1,227 @@
+package com.bennavetta.jconsole.tui;
+
+import com.bennavetta.jconsole.tui.console.StyledRun;
+import lombok.Getter;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A TuiBackend that keeps the console's output in memory as lines of colored runs, without any Swing components -
+ * so Tui objects work with java.awt.headless=true, and their output can be read back, e.g. in tests or benchmarks.
+ * <br><br>
+ * Input is entered with enter(), which processes the line like the Swing console does when the user presses enter.
+ * Input processors receive a null Console. Background color transitions are applied immediately.<br>
+ * All methods are safe to call from any thread.
+ *
+ * @author woodrow73
+ */
+public class HeadlessBackend extends AbstractLineBackend {
+
+    /** When the scrollback limit is exceeded, this fraction of the limit is evicted at once, as in ConsoleDocument. */
+    private static final double EVICTION_FRACTION = 0.1;
+
+    /** The lines of output; the last one is the line being printed to. Guarded by this. */
+    private final ArrayList<Line> lines = new ArrayList<>();
+
+    /** The total number of characters in lines, not counting line breaks */
+    private int charCount;
+
+    private Color foreground = Color.white;
+
+    /** The background color of the console - the last color of any background transition */
+    @Getter
+    private volatile Color background = Color.black;
+
+    private int maxLines, maxChars;
+
+    public HeadlessBackend() {
+        lines.add(new Line());
+    }
+
+    @Override
+    public void setConsoleSettings(TuiParent settings, boolean setBackground) {
+        boolean firstSettings = selectSettings(settings);
+        synchronized(this) {
+            foreground = settings.getDefaultForegroundColor();
+            maxLines = Math.max(0, settings.getMaxScrollbackLines());
+            maxChars = Math.max(0, settings.getMaxScrollbackChars());
+            trimScrollback();
+        }
+
+        if(settings.backgroundColorQueue.length > 0 && !firstSettings) {
+            setBackgroundTransitions(settings.backgroundColorQueueDuration, settings.backgroundColorQueue);
+            if(settings.deleteBackgroundColorQueueAfterUse)
+                settings.backgroundColorQueue = new Color[]{};
+        }
+        else if(setBackground) {
+            background = settings.getBackgroundColor();
+        }
+
+        if(firstSettings) // like a new Console, start with the prompt
+            print(List.of(new StyledRun(null, prompt)));
+    }
+
+    @Override
+    public synchronized void print(List<StyledRun> runs) {
+        for(StyledRun run : runs) {
+            if(run.getColor() != null)
+                foreground = run.getColor();
+
+            String text = run.getText();
+            int start = 0;
+            for(int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', start)) {
+                append(text, start, i);
+                lines.add(new Line());
+                start = i + 1;
+            }
+            append(text, start, text.length());
+        }
+        trimScrollback();
+    }
+
+    /** Appends part of a line in the current foreground color to the last line. */
+    private void append(String text, int start, int end) {
+        if(end > start) {
+            lines.get(lines.size() - 1).append(foreground, text, start, end);
+            charCount += end - start;
+        }
+    }
+
+    /**
+     * Removes the oldest lines if there are more lines or characters than the scrollback limit allows.
+     * Evicts down to (1 - EVICTION_FRACTION) of the limit, so the remaining lines are only shifted once per batch of
+     * lines rather than on every print.
+     */
+    private void trimScrollback() {
+        boolean overLines = maxLines > 0 && lines.size() > maxLines, overChars = maxChars > 0 && charCount > maxChars;
+        if(!overLines && !overChars)
+            return;
+
+        int keepLines = overLines ? Math.max(1, (int) (maxLines * (1 - EVICTION_FRACTION))) : Integer.MAX_VALUE;
+        int keepChars = overChars ? (int) (maxChars * (1 - EVICTION_FRACTION)) : Integer.MAX_VALUE;
+        if(!overChars && maxChars > 0) // don't evict lines only to go over the character limit again
+            keepChars = maxChars;
+        int remove = 0;
+        int chars = charCount;
+        while(remove < lines.size() - 1 && (lines.size() - remove > keepLines || chars > keepChars)) {
+            chars -= lines.get(remove).text.length();
+            remove++;
+        }
+
+        if(remove > 0) {
+            lines.subList(0, remove).clear();
+            charCount = chars;
+        }
+    }
+
+    /**
+     * Enters a line of input as if the user typed it and pressed enter: the line is echoed after the prompt,
+     * handed to any Tui waiting for input and processed by the selected Tui, then the prompt is printed again.<br>
+     * Like a user's input, the line only reaches the readers already waiting for it - it isn't kept for a thread that
+     * was just started and hasn't reached nextLine() yet. To enter input for such a thread, get a future from
+     * nextLineAsync() before calling enter(), or wait until the thread is blocked in nextLine().
+     * @param line The line to enter.
+     */
+    public void enter(String line) {
+        print(List.of(new StyledRun(null, line + "\n")));
+        processLine(line);
+    }
+
+    @Override
+    public synchronized void setForeground(Color color) {
+        foreground = color;
+    }
+
+    @Override
+    public synchronized Color getDisplayedForeground() {
+        return foreground;
+    }
+
+    /** Skips the transitions and sets the background to the last of the colors. */
+    @Override
+    public void setBackgroundTransitions(int durationMS, Color... colors) {
+        if(colors.length > 0)
+            background = colors[colors.length - 1];
+    }
+
+    /** @return All of the output, with the lines separated by '\n'. */
+    public synchronized String getText() {
+        StringBuilder text = new StringBuilder(charCount + lines.size());
+        for(int i = 0; i < lines.size(); i++) {
+            if(i > 0)
+                text.append('\n');
+            text.append(lines.get(i).text);
+        }
+        return text.toString();
+    }
+
+    /** @return The number of lines, including the line being printed to. */
+    public synchronized int getLineCount() {
+        return lines.size();
+    }
+
+    /** @return The text of a line, without its line break. */
+    public synchronized String getLine(int index) {
+        return lines.get(index).text.toString();
+    }
+
+    /** @return The runs of a single color that make up a line. */
+    public synchronized List<StyledRun> getLineRuns(int index) {
+        return lines.get(index).toRuns();
+    }
+
+    /**
+     * @param line The index of the line.
+     * @param column The index of the character in the line.
+     * @return The color the character was printed in.
+     */
+    public synchronized Color getColorAt(int line, int column) {
+        Line l = lines.get(line);
+        if(column < 0 || column >= l.text.length())
+            throw new IndexOutOfBoundsException("Column " + column + " of a line of length " + l.text.length());
+
+        int run = Arrays.binarySearch(l.starts, 0, l.runCount, column);
+        return l.colors[run >= 0 ? run : -run - 2];
+    }
+
+    /** Removes all of the output, like Console.cls() - the prompt isn't reprinted. */
+    public synchronized void clear() {
+        lines.clear();
+        lines.add(new Line());
+        charCount = 0;
+    }
+
+    /** A line of output: its text, and where each run of a single color starts */
+    private static class Line {
+        final StringBuilder text = new StringBuilder();
+        Color[] colors = new Color[2];
+        int[] starts = new int[2];
+        int runCount;
+
+        void append(Color color, String s, int start, int end) {
+            if(runCount == 0 || !colors[runCount - 1].equals(color)) {
+                if(runCount == colors.length) {
+                    colors = Arrays.copyOf(colors, runCount * 2);
+                    starts = Arrays.copyOf(starts, runCount * 2);
+                }
+                colors[runCount] = color;
+                starts[runCount] = text.length();
+                runCount++;
+            }
+            text.append(s, start, end);
+        }
+
+        List<StyledRun> toRuns() {
+            List<StyledRun> runs = new ArrayList<>(runCount);
+            for(int i = 0; i < runCount; i++) {
+                int end = i + 1 < runCount ? starts[i + 1] : text.length();
+                runs.add(new StyledRun(colors[i], text.substring(starts[i], end)));
+            }
+            return runs;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.bennavetta.jconsole.tui;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands each line the user enters to the readers that are waiting for it at that moment - one per console.<br>
+ * Readers block on a LinkedTransferQueue and wake as soon as a line is transferred, instead of polling the input log.
+ * Lines entered while nobody is waiting aren't kept, matching Scanner-like nextLine() semantics where only input
+ * entered after the call is returned.
+ *
+ * @author woodrow73
+ */
+public class InputHandoff {
+
+    /** Blocking readers waiting inside take() or poll() */
+    private final LinkedTransferQueue<String> readers = new LinkedTransferQueue<>();
+
+    /** Readers waiting on futures from next() */
+    private final ConcurrentLinkedQueue<CompletableFuture<String>> asyncReaders = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Hands a line of user input to every reader currently waiting for one. Never blocks.
+     * @param line The line the user entered.
+     */
+    public void offer(String line) {
+        // only transfer to the readers already waiting, so a reader that immediately waits again gets the next line
+        int waiting = readers.getWaitingConsumerCount();
+        for(int i = 0; i < waiting; i++) {
+            if(!readers.tryTransfer(line))
+                break;
+        }
+
+        CompletableFuture<String> reader;
+        for(int i = asyncReaders.size(); i > 0 && (reader = asyncReaders.poll()) != null; i--)
+            reader.complete(line);
+    }
+
+    /**
+     * Waits for the user to enter the next line.
+     * @return The line the user entered.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public String take() throws InterruptedException {
+        return readers.take();
+    }
+
+    /**
+     * Waits up to the given timeout for the user to enter the next line.
+     * @param timeout How long to wait.
+     * @return The line the user entered, or null if the timeout elapsed first.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public String poll(Duration timeout) throws InterruptedException {
+        return readers.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /** @return A future completed with the next line the user enters. Cancelling it stops it from waiting. */
+    public CompletableFuture<String> next() {
+        CompletableFuture<String> reader = new CompletableFuture<>();
+        reader.whenComplete((line, e) -> {
+            if(reader.isCancelled())
+                asyncReaders.remove(reader);
+        });
+        asyncReaders.offer(reader);
+        return reader;
+    }
+
+}
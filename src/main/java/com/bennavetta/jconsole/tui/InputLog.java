@@ -0,0 +1,116 @@
+package com.bennavetta.jconsole.tui;
+
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded log of the lines a user entered in one console - a ring buffer that keeps the latest capacity lines.<br>
+ * Appending is lock-free and O(1): a writer claims a sequence number, then publishes its line into the slot for that
+ * number, never overwriting a newer line. Readers never block writers; they take a snapshot of the lines that are
+ * published when they read.
+ *
+ * @author woodrow73
+ */
+public class InputLog implements Iterable<String> {
+
+    /** The number of lines a console keeps unless a Tui builder sets inputLogCapacity */
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    /** A line and its sequence number, so readers can tell whether a slot holds the line they expect */
+    private static class Entry {
+        final long sequence;
+        final String line;
+
+        Entry(long sequence, String line) {
+            this.sequence = sequence;
+            this.line = line;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> entries;
+
+    /** The number of lines ever added - the sequence number of the next line */
+    private final AtomicLong count = new AtomicLong();
+
+    /** The maximum number of lines kept; the oldest line is dropped for each line added beyond it */
+    @Getter
+    private final int capacity;
+
+    /**
+     * @param capacity The maximum number of lines to keep.
+     * @throws IllegalArgumentException if the capacity isn't positive.
+     */
+    public InputLog(int capacity) throws IllegalArgumentException {
+        if(capacity < 1)
+            throw new IllegalArgumentException("Input log capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Adds a line, dropping the oldest line if the log is full. Safe to call from any thread.
+     * @param line The line the user entered.
+     */
+    public void add(String line) {
+        long sequence = count.getAndIncrement();
+        int index = index(sequence);
+        Entry entry = new Entry(sequence, line);
+
+        Entry current;
+        do {
+            current = entries.get(index);
+            if(current != null && current.sequence > sequence)
+                return; // a newer line already took the slot
+        } while(!entries.compareAndSet(index, current, entry));
+    }
+
+    /** @return The most recently added line, or Optional.empty() if no line has been added. */
+    public Optional<String> getLatest() {
+        long end = count.get();
+        // a writer that claimed the latest sequence may not have published it yet, so fall back to older lines
+        for(long sequence = end - 1; sequence >= 0 && sequence >= end - capacity; sequence--) {
+            Entry entry = entries.get(index(sequence));
+            if(entry != null && entry.sequence == sequence)
+                return Optional.of(entry.line);
+        }
+        return Optional.empty();
+    }
+
+    /** @return The lines currently kept, oldest first. */
+    public List<String> snapshot() {
+        long end = count.get();
+        long start = Math.max(0, end - capacity);
+        List<String> lines = new ArrayList<>((int) (end - start));
+
+        for(long sequence = start; sequence < end; sequence++) {
+            Entry entry = entries.get(index(sequence));
+            if(entry != null && entry.sequence == sequence)
+                lines.add(entry.line);
+        }
+        return lines;
+    }
+
+    /** @return An iterator over a snapshot of the lines currently kept, oldest first. */
+    @Override
+    public Iterator<String> iterator() {
+        return Collections.unmodifiableList(snapshot()).iterator();
+    }
+
+    /** @return The number of lines currently kept. */
+    public int size() {
+        return (int) Math.min(count.get(), capacity);
+    }
+
+    /** @return The number of lines ever added, including the ones that were dropped. */
+    public long getTotalCount() {
+        return count.get();
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.bennavetta.jconsole.tui;
+
+/**
+ * What a Tui in async output mode does when its output queue is full - set with Tui.Builder.asyncOutput()
+ * or TuiFrame.Builder.asyncOutput().
+ *
+ * @author woodrow73
+ */
+public enum OutputBackpressure {
+
+    /** The printing thread waits until the EDT has flushed enough of the queue. */
+    BLOCK,
+
+    /** The oldest queued message is discarded to make room for the new one. */
+    DROP_OLDEST,
+
+    /** The queue has no capacity limit; memory grows until the EDT catches up. */
+    GROW
+
+}
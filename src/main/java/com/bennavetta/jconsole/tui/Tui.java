@@ -1,16 +1,20 @@
 package com.bennavetta.jconsole.tui;
 
+import com.bennavetta.jconsole.commands.CommandTable;
 import com.bennavetta.jconsole.commands.InputProcessor;
+import com.bennavetta.jconsole.history.CommandHistory;
 
 import javax.swing.*;
 import java.awt.*;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * Uses a mutable Builder Design Pattern with the inner class Builder.<br><br>
  * <p>
  * Given a JFrame, it'll construct a T-UI (text user interface) inside, handling both input and output -
  * multiple Tui objects can be created for a JFrame, though only one can be selected at a time.<br>
+ * Given a TuiBackend instead (e.g. a HeadlessBackend), it works the same way without a display.<br>
  * To select a Tui object, either call the applySettingsToFrame() method directly, or indirectly through
  * any of the <b>print</b> or <b>nextFoo</b> or <b>queueBackground</b> methods.
  * </p>
@@ -27,6 +31,8 @@ public class Tui extends TuiParent {
 
         protected Optional<Map<String, InputProcessor>> commandMap = Optional.empty();
 
+        protected Optional<CommandTable> commandTable = Optional.empty();
+
         protected Optional<InputProcessor> processUnrecognizedCommand = Optional.empty(),
                 processor = Optional.empty();
 
@@ -37,11 +43,25 @@ public class Tui extends TuiParent {
 
         protected Optional<String> prompt = Optional.empty();
 
-        protected Optional<Integer> charPrintDelayMS = Optional.empty();
+        protected Optional<Integer> charPrintDelayMS = Optional.empty(),
+                maxScrollbackLines = Optional.empty(),
+                maxScrollbackChars = Optional.empty(),
+                inputLogCapacity = Optional.empty(),
+                repaintIntervalMS = Optional.empty();
+
+        protected Optional<OutputBackpressure> asyncOutputBackpressure = Optional.empty();
+
+        protected Optional<CommandHistory> commandHistory = Optional.empty();
+
+        protected Optional<Executor> processorExecutor = Optional.empty();
+
+        protected int asyncOutputCapacity, asyncOutputFlushIntervalMS = AsyncOutputQueue.DEFAULT_FLUSH_INTERVAL_MS;
 
         protected final JFrame frame;
 
-        protected boolean resetColorAfterEachMsg;
+        protected final TuiBackend backend;
+
+        protected boolean resetColorAfterEachMsg, virtualScrolling, cellGrid;
 
         protected final boolean setFrameLikeWindows10CMD;
 
@@ -53,6 +73,7 @@ public class Tui extends TuiParent {
          */
         public Builder(JFrame frame, boolean resetColorAfterEachMsg) {
             this.frame = frame;
+            this.backend = null;
             this.resetColorAfterEachMsg = resetColorAfterEachMsg;
             this.setFrameLikeWindows10CMD = false;
         }
@@ -68,10 +89,25 @@ public class Tui extends TuiParent {
          */
         public Builder(JFrame frame, boolean resetColorAfterEachMsg, boolean setFrameLikeWindows10CMD) {
             this.frame = frame;
+            this.backend = null;
             this.setFrameLikeWindows10CMD = setFrameLikeWindows10CMD;
             this.resetColorAfterEachMsg = resetColorAfterEachMsg;
         }
 
+        /**
+         * Starts building a T-UI (text user interface) that prints to the given backend instead of a JFrame,
+         * e.g. a HeadlessBackend. Multiple Tui objects can share a backend, like they can share a JFrame.
+         * @param backend The backend to build a TUI (text user interface) for.
+         * @param resetColorAfterEachMsg Whether the text color in the console should be reset to
+         *                               the defaultForegroundColor after each message.
+         */
+        public Builder(TuiBackend backend, boolean resetColorAfterEachMsg) {
+            this.frame = null;
+            this.backend = backend;
+            this.setFrameLikeWindows10CMD = false;
+            this.resetColorAfterEachMsg = resetColorAfterEachMsg;
+        }
+
         /** @param processor Processes all user input.
          *  @return This Builder object for method chaining. */
         public Tui.Builder processor(InputProcessor processor) {
@@ -79,13 +115,21 @@ public class Tui extends TuiParent {
             return this;
         }
 
-        /** @param commandMap A map to store commands and triggers.
+        /** @param commandMap A map to store commands and triggers, looked up ignoring case. It's copied and compiled
+         *                    into a CommandTable when the Tui is built - call recompileCommandMap() after changing it.
          *  @return This Builder object for method chaining. */
         public Tui.Builder commandMap(Map<String, InputProcessor> commandMap) {
             this.commandMap = Optional.of(commandMap);
             return this;
         }
 
+        /** @param commandTable The commands, with any aliases and subcommands - used instead of the commandMap.
+         *  @return This Builder object for method chaining. */
+        public Tui.Builder commandTable(CommandTable commandTable) {
+            this.commandTable = Optional.of(commandTable);
+            return this;
+        }
+
         /** @param processUnrecognizedCommand How to process unrecognized commands.
          *  @return This Builder object for method chaining. */
         public Tui.Builder processUnrecognizedCommand(InputProcessor processUnrecognizedCommand) {
@@ -137,6 +181,110 @@ public class Tui extends TuiParent {
             return this;
         }
 
+        /** @param maxScrollbackLines The maximum number of lines the console keeps; the oldest lines are removed
+         *                           in bulk once it's exceeded. (default 0, no limit)
+         *  @return This Builder object for method chaining. */
+        public Tui.Builder maxScrollbackLines(int maxScrollbackLines) {
+            this.maxScrollbackLines = Optional.of(maxScrollbackLines);
+            return this;
+        }
+
+        /** @param maxScrollbackChars The maximum number of characters the console keeps; the oldest lines are removed
+         *                           in bulk once it's exceeded. (default 0, no limit)
+         *  @return This Builder object for method chaining. */
+        public Tui.Builder maxScrollbackChars(int maxScrollbackChars) {
+            this.maxScrollbackChars = Optional.of(maxScrollbackChars);
+            return this;
+        }
+
+        /** @param commandHistory The commands the user browses with the UP and DOWN arrow keys, e.g.
+         *                        MappedCommandHistory.open(Paths.get("history")) to keep them across sessions. Tui
+         *                        objects can share a history. (default the console's in-memory history)
+         *  @return This Builder object for method chaining. */
+        public Tui.Builder commandHistory(CommandHistory commandHistory) {
+            this.commandHistory = Optional.of(commandHistory);
+            return this;
+        }
+
+        /** @param processorExecutor Runs the processor and commands of each line the user enters, instead of the EDT -
+         *                           so a slow command doesn't freeze the console. E.g. a bounded thread pool, or
+         *                           Executors.newVirtualThreadPerTaskExecutor() on Java 21+. Lines are still
+         *                           processed one at a time in order, and the next prompt is written once a line's
+         *                           commands finish. Only used by Swing consoles. Processors then get the Console
+         *                           on the executor's thread: its print, color, font and cls methods move to the EDT
+         *                           themselves, but anything else Swing must be done with SwingUtilities.invokeLater()
+         *                           or invokeAndWait(). (default the EDT)
+         *  @return This Builder object for method chaining. */
+        public Tui.Builder processorExecutor(Executor processorExecutor) {
+            this.processorExecutor = Optional.of(processorExecutor);
+            return this;
+        }
+
+        /** @param virtualScrolling Whether the console only lays out and paints the lines in view, so resizing and
+         *                         printing stay fast with a long scrollback. Lines get the height of the font and
+         *                         don't wrap - long lines scroll horizontally. Only the first Tui of a console
+         *                         sets it. (default false)
+         *  @return This Builder object for method chaining. */
+        public Tui.Builder virtualScrolling(boolean virtualScrolling) {
+            this.virtualScrolling = virtualScrolling;
+            return this;
+        }
+
+        /** @param cellGrid Whether the console paints each line as a grid of character cells from cached glyph
+         *                 images - faster than Swing's text views for a monospaced font, like the default one.
+         *                 Implies virtualScrolling. Only the first Tui of a console sets it. (default false)
+         *  @return This Builder object for method chaining. */
+        public Tui.Builder cellGrid(boolean cellGrid) {
+            this.cellGrid = cellGrid;
+            return this;
+        }
+
+        /** @param repaintIntervalMS The minimum time between repaints of the console in milliseconds - output printed
+         *                          in between is painted, and scrolled to, in one frame. 0 repaints on every
+         *                          change. (default the display's refresh interval, e.g. 16 at 60 Hz)
+         *  @return This Builder object for method chaining. */
+        public Tui.Builder repaintIntervalMS(int repaintIntervalMS) {
+            this.repaintIntervalMS = Optional.of(repaintIntervalMS);
+            return this;
+        }
+
+        /** @param inputLogCapacity The number of lines the user entered that Tui.allUserInputLogs keeps for the
+         *                          console; the oldest line is dropped for each new one beyond it. Only the first
+         *                          Tui of a console sets it. (default InputLog.DEFAULT_CAPACITY)
+         *  @return This Builder object for method chaining. */
+        public Tui.Builder inputLogCapacity(int inputLogCapacity) {
+            this.inputLogCapacity = Optional.of(inputLogCapacity);
+            return this;
+        }
+
+        /**
+         * Enables async output mode: print methods queue their text and return without waiting on the EDT, and the
+         * queue is printed about once per frame. Ignored while charPrintDelayMS is set.<br>
+         * The queue is shared by every Tui on the same console, so only the first Tui's settings are used.
+         * @param backpressure What print methods do when the queue is full.
+         * @param capacity The maximum number of queued print calls (ignored for OutputBackpressure.GROW).
+         * @return This Builder object for method chaining. */
+        public Tui.Builder asyncOutput(OutputBackpressure backpressure, int capacity) {
+            this.asyncOutputBackpressure = Optional.of(backpressure);
+            this.asyncOutputCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Enables async output mode: print methods queue their text and return without waiting on the EDT, and the
+         * queue is printed every flushIntervalMS milliseconds. Ignored while charPrintDelayMS is set.<br>
+         * The queue is shared by every Tui on the same console, so only the first Tui's settings are used.
+         * @param backpressure What print methods do when the queue is full.
+         * @param capacity The maximum number of queued print calls (ignored for OutputBackpressure.GROW).
+         * @param flushIntervalMS The time between flushes of the queue in milliseconds.
+         * @return This Builder object for method chaining. */
+        public Tui.Builder asyncOutput(OutputBackpressure backpressure, int capacity, int flushIntervalMS) {
+            this.asyncOutputBackpressure = Optional.of(backpressure);
+            this.asyncOutputCapacity = capacity;
+            this.asyncOutputFlushIntervalMS = flushIntervalMS;
+            return this;
+        }
+
         /**
          * Builds a Tui object.
          * @return The Tui object made using this Builder's settings.
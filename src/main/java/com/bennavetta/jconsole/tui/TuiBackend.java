@@ -0,0 +1,62 @@
+package com.bennavetta.jconsole.tui;
+
+import com.bennavetta.jconsole.tui.console.StyledRun;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Where a Tui's output goes and its input comes from - one instance per console, shared by every Tui on it.<br><br>
+ * The Swing implementation is ConsoleHandler (a Console inside a JFrame); HeadlessBackend keeps the output in memory,
+ * so Tui objects also work with java.awt.headless=true. Pass a backend to Tui.Builder to use it instead of a JFrame.
+ *
+ * @author woodrow73
+ */
+public interface TuiBackend {
+
+    /** @return The Tui whose settings are currently applied, or null if none has been selected yet. */
+    TuiParent getCurrentSettings();
+
+    /**
+     * Applies a Tui's settings, selecting it. Safe to call from any thread.
+     * @param settings The settings to apply.
+     * @param setBackground Whether to set the background color.
+     */
+    void setConsoleSettings(TuiParent settings, boolean setBackground);
+
+    /**
+     * Prints a message. Safe to call from any thread; returns once the message is printed.
+     * @param runs The runs of the message, in order. A run without a color keeps the current color.
+     */
+    void print(List<StyledRun> runs);
+
+    /**
+     * Sets the color of the text printed next. Safe to call from any thread.
+     * @param color The new foreground color.
+     */
+    void setForeground(Color color);
+
+    /** @return The color of the text printed next. */
+    Color getDisplayedForeground();
+
+    /**
+     * Replaces any ongoing background color transitions with transitions through the given colors.
+     * @param durationMS The duration of each transition in milliseconds.
+     * @param colors The colors to transition through, in order.
+     */
+    void setBackgroundTransitions(int durationMS, Color... colors);
+
+    /** @return The handoff of the lines the user enters to the Tui objects waiting for input. */
+    InputHandoff getInput();
+
+    /**
+     * Gets the async output queue of the console, creating it if it doesn't exist yet - only the settings of the
+     * first call are used.
+     * @param backpressure What to do when the queue is full.
+     * @param capacity The maximum number of queued messages.
+     * @param flushIntervalMS The time between flushes in milliseconds.
+     * @return The console's async output queue.
+     */
+    AsyncOutputQueue getOutputQueue(OutputBackpressure backpressure, int capacity, int flushIntervalMS);
+
+}
@@ -1,9 +1,12 @@
 package com.bennavetta.jconsole.tui;
 
+import com.bennavetta.jconsole.commands.CommandTable;
 import com.bennavetta.jconsole.commands.InputProcessor;
+import com.bennavetta.jconsole.history.CommandHistory;
 
 import java.awt.*;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * Uses a mutable Builder Design Pattern with the inner class Builder.<br><br>
@@ -23,6 +26,8 @@ public class TuiFrame extends TuiParent {
 
         protected Optional<Map<String, InputProcessor>> commandMap = Optional.empty();
 
+        protected Optional<CommandTable> commandTable = Optional.empty();
+
         protected Optional<InputProcessor> processUnrecognizedCommand = Optional.empty(),
                 processor = Optional.empty();
 
@@ -33,13 +38,25 @@ public class TuiFrame extends TuiParent {
 
         protected Optional<String> prompt = Optional.empty();
 
-        protected Optional<Integer> charPrintDelayMS = Optional.empty();
+        protected Optional<Integer> charPrintDelayMS = Optional.empty(),
+                maxScrollbackLines = Optional.empty(),
+                maxScrollbackChars = Optional.empty(),
+                inputLogCapacity = Optional.empty(),
+                repaintIntervalMS = Optional.empty();
+
+        protected Optional<OutputBackpressure> asyncOutputBackpressure = Optional.empty();
+
+        protected Optional<CommandHistory> commandHistory = Optional.empty();
+
+        protected Optional<Executor> processorExecutor = Optional.empty();
+
+        protected int asyncOutputCapacity, asyncOutputFlushIntervalMS = AsyncOutputQueue.DEFAULT_FLUSH_INTERVAL_MS;
 
         protected Optional<Dimension> frameSize = Optional.empty();
 
         protected Optional<Point> frameLocation = Optional.empty();
 
-        protected boolean resetColorAfterEachMsg;
+        protected boolean resetColorAfterEachMsg, virtualScrolling, cellGrid;
 
         protected final String frameTitle;
 
@@ -61,13 +78,21 @@ public class TuiFrame extends TuiParent {
             return this;
         }
 
-        /** @param commandMap A map to store commands and triggers.
+        /** @param commandMap A map to store commands and triggers, looked up ignoring case. It's copied and compiled
+         *                    into a CommandTable when the Tui is built - call recompileCommandMap() after changing it.
          *  @return This Builder object for method chaining. */
         public TuiFrame.Builder commandMap(Map<String, InputProcessor> commandMap) {
             this.commandMap = Optional.of(commandMap);
             return this;
         }
 
+        /** @param commandTable The commands, with any aliases and subcommands - used instead of the commandMap.
+         *  @return This Builder object for method chaining. */
+        public TuiFrame.Builder commandTable(CommandTable commandTable) {
+            this.commandTable = Optional.of(commandTable);
+            return this;
+        }
+
         /** @param processUnrecognizedCommand How to process unrecognized commands.
          *  @return This Builder object for method chaining. */
         public TuiFrame.Builder processUnrecognizedCommand(InputProcessor processUnrecognizedCommand) {
@@ -138,6 +163,110 @@ public class TuiFrame extends TuiParent {
             return this;
         }
 
+        /** @param maxScrollbackLines The maximum number of lines the console keeps; the oldest lines are removed
+         *                           in bulk once it's exceeded. (default 0, no limit)
+         *  @return This Builder object for method chaining. */
+        public TuiFrame.Builder maxScrollbackLines(int maxScrollbackLines) {
+            this.maxScrollbackLines = Optional.of(maxScrollbackLines);
+            return this;
+        }
+
+        /** @param maxScrollbackChars The maximum number of characters the console keeps; the oldest lines are removed
+         *                           in bulk once it's exceeded. (default 0, no limit)
+         *  @return This Builder object for method chaining. */
+        public TuiFrame.Builder maxScrollbackChars(int maxScrollbackChars) {
+            this.maxScrollbackChars = Optional.of(maxScrollbackChars);
+            return this;
+        }
+
+        /** @param commandHistory The commands the user browses with the UP and DOWN arrow keys, e.g.
+         *                        MappedCommandHistory.open(Paths.get("history")) to keep them across sessions. Tui
+         *                        objects can share a history. (default the console's in-memory history)
+         *  @return This Builder object for method chaining. */
+        public TuiFrame.Builder commandHistory(CommandHistory commandHistory) {
+            this.commandHistory = Optional.of(commandHistory);
+            return this;
+        }
+
+        /** @param processorExecutor Runs the processor and commands of each line the user enters, instead of the EDT -
+         *                           so a slow command doesn't freeze the console. E.g. a bounded thread pool, or
+         *                           Executors.newVirtualThreadPerTaskExecutor() on Java 21+. Lines are still
+         *                           processed one at a time in order, and the next prompt is written once a line's
+         *                           commands finish. Only used by Swing consoles. Processors then get the Console
+         *                           on the executor's thread: its print, color, font and cls methods move to the EDT
+         *                           themselves, but anything else Swing must be done with SwingUtilities.invokeLater()
+         *                           or invokeAndWait(). (default the EDT)
+         *  @return This Builder object for method chaining. */
+        public TuiFrame.Builder processorExecutor(Executor processorExecutor) {
+            this.processorExecutor = Optional.of(processorExecutor);
+            return this;
+        }
+
+        /** @param virtualScrolling Whether the console only lays out and paints the lines in view, so resizing and
+         *                         printing stay fast with a long scrollback. Lines get the height of the font and
+         *                         don't wrap - long lines scroll horizontally. Only the first Tui of a console
+         *                         sets it. (default false)
+         *  @return This Builder object for method chaining. */
+        public TuiFrame.Builder virtualScrolling(boolean virtualScrolling) {
+            this.virtualScrolling = virtualScrolling;
+            return this;
+        }
+
+        /** @param cellGrid Whether the console paints each line as a grid of character cells from cached glyph
+         *                 images - faster than Swing's text views for a monospaced font, like the default one.
+         *                 Implies virtualScrolling. Only the first Tui of a console sets it. (default false)
+         *  @return This Builder object for method chaining. */
+        public TuiFrame.Builder cellGrid(boolean cellGrid) {
+            this.cellGrid = cellGrid;
+            return this;
+        }
+
+        /** @param repaintIntervalMS The minimum time between repaints of the console in milliseconds - output printed
+         *                          in between is painted, and scrolled to, in one frame. 0 repaints on every
+         *                          change. (default the display's refresh interval, e.g. 16 at 60 Hz)
+         *  @return This Builder object for method chaining. */
+        public TuiFrame.Builder repaintIntervalMS(int repaintIntervalMS) {
+            this.repaintIntervalMS = Optional.of(repaintIntervalMS);
+            return this;
+        }
+
+        /** @param inputLogCapacity The number of lines the user entered that Tui.allUserInputLogs keeps for the
+         *                          console; the oldest line is dropped for each new one beyond it. Only the first
+         *                          Tui of a console sets it. (default InputLog.DEFAULT_CAPACITY)
+         *  @return This Builder object for method chaining. */
+        public TuiFrame.Builder inputLogCapacity(int inputLogCapacity) {
+            this.inputLogCapacity = Optional.of(inputLogCapacity);
+            return this;
+        }
+
+        /**
+         * Enables async output mode: print methods queue their text and return without waiting on the EDT, and the
+         * queue is printed about once per frame. Ignored while charPrintDelayMS is set.<br>
+         * The queue is shared by every Tui on the same console, so only the first Tui's settings are used.
+         * @param backpressure What print methods do when the queue is full.
+         * @param capacity The maximum number of queued print calls (ignored for OutputBackpressure.GROW).
+         * @return This Builder object for method chaining. */
+        public TuiFrame.Builder asyncOutput(OutputBackpressure backpressure, int capacity) {
+            this.asyncOutputBackpressure = Optional.of(backpressure);
+            this.asyncOutputCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Enables async output mode: print methods queue their text and return without waiting on the EDT, and the
+         * queue is printed every flushIntervalMS milliseconds. Ignored while charPrintDelayMS is set.<br>
+         * The queue is shared by every Tui on the same console, so only the first Tui's settings are used.
+         * @param backpressure What print methods do when the queue is full.
+         * @param capacity The maximum number of queued print calls (ignored for OutputBackpressure.GROW).
+         * @param flushIntervalMS The time between flushes of the queue in milliseconds.
+         * @return This Builder object for method chaining. */
+        public TuiFrame.Builder asyncOutput(OutputBackpressure backpressure, int capacity, int flushIntervalMS) {
+            this.asyncOutputBackpressure = Optional.of(backpressure);
+            this.asyncOutputCapacity = capacity;
+            this.asyncOutputFlushIntervalMS = flushIntervalMS;
+            return this;
+        }
+
         /**
          * Builds a TuiFrame object.
          * @return The TuiFrame object made using this Builder's settings.
@@ -1,16 +1,26 @@
 package com.bennavetta.jconsole.tui;
 
+import com.bennavetta.jconsole.commands.CommandTable;
 import com.bennavetta.jconsole.commands.InputProcessor;
+import com.bennavetta.jconsole.completion.CompletionSource;
+import com.bennavetta.jconsole.completion.PrefixCompletionSource;
+import com.bennavetta.jconsole.history.CommandHistory;
+import com.bennavetta.jconsole.tui.console.Console;
+import com.bennavetta.jconsole.tui.console.LineLayout;
+import com.bennavetta.jconsole.tui.console.RepaintScheduler;
+import com.bennavetta.jconsole.tui.console.StyledRun;
+import com.bennavetta.jconsole.util.ColorTokenizer;
 import com.bennavetta.jconsole.util.ColorUtil;
-import com.bennavetta.jconsole.util.StringUtil;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.swing.*;
 import java.awt.*;
+import java.time.Duration;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -19,14 +29,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *
  * @author woodrow73
  */
-class TuiParent {
+public class TuiParent {
 
-    /** Thread safe map of ConsoleHandler.uniqueID to a list of all the user's input for a console on that JFrame. */
-    public static Map<Integer, CopyOnWriteArrayList<String>> allUserInputLogs = Collections.synchronizedMap(new LinkedHashMap());
-
-    /** A log of the user's input for the ConsoleHandler connected to the current Tui object.
-     *  Holds an object reference to a <i>value</i> in allUserInputLogs. */
-    private final List<String> userInputLog;
+    /** Thread safe map of ConsoleHandler.uniqueID to a log of the user's latest input for a console on that JFrame. */
+    public static Map<Integer, InputLog> allUserInputLogs = Collections.synchronizedMap(new LinkedHashMap<>());
 
     /** When switching between Tui objects, how long the fade between background colors should take in milliseconds. */
     @Setter @Getter
@@ -41,6 +47,19 @@ class TuiParent {
     @Getter
     private final Map<String, InputProcessor> commandMap;
 
+    /** The commands entered lines are dispatched to - compiled from a copy of commandMap when this Tui is built and by
+     *  recompileCommandMap(), unless the builder was given a CommandTable. Replaced as a whole, so a line being
+     *  processed sees one table. */
+    @Getter
+    private volatile CommandTable commandTable;
+
+    /** Whether commandTable is compiled from commandMap */
+    private final boolean compileCommandMap;
+
+    /** Completes the names of commandTable when the user presses TAB - built the first time this Tui is selected,
+     *  and again after commandTable is recompiled. Guarded by this. */
+    private CompletionSource completionSource;
+
     /** How to process unrecognized commands. */
     @Getter
     private final InputProcessor processUnrecognizedCommand;
@@ -69,7 +88,36 @@ class TuiParent {
     @Getter @Setter
     private int charPrintDelayMS;
 
-    /** The JFrame that this Tui is for. */
+    /** The maximum number of lines the console keeps while this Tui is selected, or 0 for no limit. */
+    @Getter
+    private final int maxScrollbackLines;
+
+    /** The maximum number of characters the console keeps while this Tui is selected, or 0 for no limit. */
+    @Getter
+    private final int maxScrollbackChars;
+
+    /** The number of input lines the console's log keeps - set by the first Tui of a console. */
+    @Getter
+    private final int inputLogCapacity;
+
+    /** The commands the user browses with the UP and DOWN arrow keys while this Tui is selected, or null for the
+     *  console's in-memory history. */
+    @Getter
+    private final CommandHistory commandHistory;
+
+    /** Runs the processors of lines the user enters while this Tui is selected, or null to run them on the EDT. */
+    @Getter
+    private final Executor processorExecutor;
+
+    /** The minimum time between repaints of the console in milliseconds while this Tui is selected, or 0 for none */
+    @Getter
+    private final int repaintIntervalMS;
+
+    /** How the console lays out its lines - set by the first Tui of a console. */
+    @Getter
+    private final LineLayout lineLayout;
+
+    /** The JFrame that this Tui is for, or null if it was built with a TuiBackend. */
     @Getter
     private final JFrame frame;
 
@@ -90,7 +138,12 @@ class TuiParent {
     private static final Font DEFAULT_FONT = new Font(Font.MONOSPACED, Font.BOLD, 14);
     private static final String DEFAULT_PROMPT = "";
 
-    private final ConsoleHandler consoleHandler;
+    /** The console this Tui prints to - a ConsoleHandler unless a backend was given to the builder. */
+    @Getter
+    private final TuiBackend backend;
+
+    /** The console's output queue if this Tui is in async output mode, otherwise null. */
+    private final AsyncOutputQueue outputQueue;
 
     /** A series of background colors to cycle through when this Tui is selected. */
     protected Color[] backgroundColorQueue = new Color[]{};
@@ -101,12 +154,12 @@ class TuiParent {
     /** Whether the backgroundColorQueue should be deleted after it's been used. */
     protected boolean deleteBackgroundColorQueueAfterUse = false;
 
-    /** A regex to get '0xRRGGBB' hex strings that are not immediately followed by another hex string */
-    private String hexRegex = "0x[0-9A-Fa-f]{6}";
-
     protected TuiParent(Tui.Builder builder) {
         this.processor = builder.processor.isPresent() ? builder.processor.get() : InputProcessor.NO_OP;
         this.commandMap = builder.commandMap.isPresent() ? builder.commandMap.get() : Map.of();
+        this.commandTable = builder.commandTable.isPresent() ? builder.commandTable.get() :
+                CommandTable.compile(new LinkedHashMap<>(commandMap));
+        this.compileCommandMap = !builder.commandTable.isPresent();
         this.processUnrecognizedCommand = builder.processUnrecognizedCommand.isPresent() ?
                 builder.processUnrecognizedCommand.get() : InputProcessor.NO_OP;
         this.backgroundColor = builder.backgroundColor.isPresent() ? builder.backgroundColor.get() : DEFAULT_BACKGROUND_COLOR;
@@ -116,29 +169,51 @@ class TuiParent {
         this.prompt = builder.prompt.isPresent() ? builder.prompt.get() : DEFAULT_PROMPT;
         this.resetColorAfterEachMsg = new AtomicBoolean(builder.resetColorAfterEachMsg);
         this.charPrintDelayMS = builder.charPrintDelayMS.isPresent() ? builder.charPrintDelayMS.get() : 0;
+        this.maxScrollbackLines = builder.maxScrollbackLines.isPresent() ? builder.maxScrollbackLines.get() : 0;
+        this.maxScrollbackChars = builder.maxScrollbackChars.isPresent() ? builder.maxScrollbackChars.get() : 0;
+        this.inputLogCapacity = builder.inputLogCapacity.isPresent() ? builder.inputLogCapacity.get() :
+                InputLog.DEFAULT_CAPACITY;
+        this.commandHistory = builder.commandHistory.isPresent() ? builder.commandHistory.get() : null;
+        this.processorExecutor = builder.processorExecutor.isPresent() ? builder.processorExecutor.get() : null;
+        this.repaintIntervalMS = builder.repaintIntervalMS.isPresent() ? builder.repaintIntervalMS.get() :
+                RepaintScheduler.getDisplayFrameInterval();
+        this.lineLayout = builder.cellGrid ? LineLayout.CELL_GRID :
+                builder.virtualScrolling ? LineLayout.VIRTUAL : LineLayout.WRAPPED;
 
         this.frame = builder.frame;
-        boolean unregisteredFrame = !ConsoleHandler.instances.containsKey(frame);
 
-        if(builder.setFrameLikeWindows10CMD && unregisteredFrame) {
-            frame.setSize(FrameSettings.DEFAULT_SIZE);
-            frame.setLocation(FrameSettings.DEFAULT_LOCATION);
-            frame.setDefaultCloseOperation(FrameSettings.DEFAULT_CLOSE_OPERATION);
+        if(builder.backend != null) {
+            backend = builder.backend;
+            if(backend.getCurrentSettings() == null) // the first Tui on the backend is selected, like a new JFrame's
+                backend.setConsoleSettings(this, true);
         }
+        else {
+            boolean unregisteredFrame = !ConsoleHandler.instances.containsKey(frame);
 
-        // There is only one ConsoleHandler per JFrame, but there can be multiple Tui objects per ConsoleHandler/JFrame
-        // Create a new ConsoleHandler instance if one doesn't already exist for this JFrame
-        if(unregisteredFrame)
-            consoleHandler = new ConsoleHandler(this);
-        else
-            consoleHandler = ConsoleHandler.instances.get(frame);
+            if(builder.setFrameLikeWindows10CMD && unregisteredFrame) {
+                frame.setSize(FrameSettings.DEFAULT_SIZE);
+                frame.setLocation(FrameSettings.DEFAULT_LOCATION);
+                frame.setDefaultCloseOperation(FrameSettings.DEFAULT_CLOSE_OPERATION);
+            }
 
-        userInputLog = allUserInputLogs.get(consoleHandler.getUniqueID());
+            // There is only one ConsoleHandler per JFrame, but there can be multiple Tui objects per ConsoleHandler/JFrame
+            // Create a new ConsoleHandler instance if one doesn't already exist for this JFrame
+            if(unregisteredFrame)
+                backend = new ConsoleHandler(this);
+            else
+                backend = ConsoleHandler.instances.get(frame);
+        }
+
+        outputQueue = builder.asyncOutputBackpressure.isPresent() ? backend.getOutputQueue(
+                builder.asyncOutputBackpressure.get(), builder.asyncOutputCapacity, builder.asyncOutputFlushIntervalMS) : null;
     }
 
     protected TuiParent(TuiFrame.Builder builder) {
         this.processor = builder.processor.isPresent() ? builder.processor.get() : InputProcessor.NO_OP;
         this.commandMap = builder.commandMap.isPresent() ? builder.commandMap.get() : Map.of();
+        this.commandTable = builder.commandTable.isPresent() ? builder.commandTable.get() :
+                CommandTable.compile(new LinkedHashMap<>(commandMap));
+        this.compileCommandMap = !builder.commandTable.isPresent();
         this.processUnrecognizedCommand = builder.processUnrecognizedCommand.isPresent() ?
                 builder.processUnrecognizedCommand.get() : InputProcessor.NO_OP;
         this.backgroundColor = builder.backgroundColor.isPresent() ? builder.backgroundColor.get() : DEFAULT_BACKGROUND_COLOR;
@@ -148,6 +223,16 @@ class TuiParent {
         this.prompt = builder.prompt.isPresent() ? builder.prompt.get() : DEFAULT_PROMPT;
         this.resetColorAfterEachMsg = new AtomicBoolean(builder.resetColorAfterEachMsg);
         this.charPrintDelayMS = builder.charPrintDelayMS.isPresent() ? builder.charPrintDelayMS.get() : 0;
+        this.maxScrollbackLines = builder.maxScrollbackLines.isPresent() ? builder.maxScrollbackLines.get() : 0;
+        this.maxScrollbackChars = builder.maxScrollbackChars.isPresent() ? builder.maxScrollbackChars.get() : 0;
+        this.inputLogCapacity = builder.inputLogCapacity.isPresent() ? builder.inputLogCapacity.get() :
+                InputLog.DEFAULT_CAPACITY;
+        this.commandHistory = builder.commandHistory.isPresent() ? builder.commandHistory.get() : null;
+        this.processorExecutor = builder.processorExecutor.isPresent() ? builder.processorExecutor.get() : null;
+        this.repaintIntervalMS = builder.repaintIntervalMS.isPresent() ? builder.repaintIntervalMS.get() :
+                RepaintScheduler.getDisplayFrameInterval();
+        this.lineLayout = builder.cellGrid ? LineLayout.CELL_GRID :
+                builder.virtualScrolling ? LineLayout.VIRTUAL : LineLayout.WRAPPED;
 
         this.frame = new JFrame(builder.frameTitle);
         frame.setSize(builder.frameSize.isPresent() ? builder.frameSize.get() : FrameSettings.DEFAULT_SIZE);
@@ -155,9 +240,10 @@ class TuiParent {
         frame.setDefaultCloseOperation(FrameSettings.DEFAULT_CLOSE_OPERATION);
 
         // since it's a new JFrame, create a new ConsoleHandler instance
-        consoleHandler = new ConsoleHandler(this);
+        backend = new ConsoleHandler(this);
 
-        userInputLog = allUserInputLogs.get(consoleHandler.getUniqueID());
+        outputQueue = builder.asyncOutputBackpressure.isPresent() ? backend.getOutputQueue(
+                builder.asyncOutputBackpressure.get(), builder.asyncOutputCapacity, builder.asyncOutputFlushIntervalMS) : null;
 
         frame.setVisible(true);
     }
@@ -168,13 +254,8 @@ class TuiParent {
      */
     public void setForegroundColor(Color color) {
         defaultForegroundColor = color;
-        if(this.equals(consoleHandler.currentSettings)) { // if this Tui is the current Tui for the ConsoleHandler
-            try {
-                SwingUtilities.invokeAndWait(() -> consoleHandler.getConsole().setConsoleForeground(color));
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+        if(this.equals(backend.getCurrentSettings())) // if this Tui is the current Tui for the ConsoleHandler
+            setConsoleForeground(color);
     }
 
     /**
@@ -183,7 +264,7 @@ class TuiParent {
      * @return
      */
     public Color getDisplayedForegroundColor() {
-        return consoleHandler.getConsole().getTextPane().getForeground();
+        return backend.getDisplayedForeground();
     }
 
     /**
@@ -197,8 +278,8 @@ class TuiParent {
         backgroundColor = color;
 
         // if this Tui is the currently selected, update the background color of the console
-        if(this.equals(consoleHandler.currentSettings))
-            consoleHandler.setBackgroundTransitions(backgroundColorTransitionMS, color);
+        if(this.equals(backend.getCurrentSettings()))
+            backend.setBackgroundTransitions(backgroundColorTransitionMS, color);
     }
 
     /**
@@ -213,8 +294,8 @@ class TuiParent {
         backgroundColor = color;
 
         // if this Tui is the currently selected, update the background color of the console
-        if(this.equals(consoleHandler.currentSettings))
-            consoleHandler.setBackgroundTransitions(durationMS, color);
+        if(this.equals(backend.getCurrentSettings()))
+            backend.setBackgroundTransitions(durationMS, color);
     }
 
     /**
@@ -230,8 +311,8 @@ class TuiParent {
         this.deleteBackgroundColorQueueAfterUse = deleteBackgroundColorQueueAfterUse;
         this.backgroundColorQueueDuration = getBackgroundColorTransitionMS();
 
-        if(this.equals(consoleHandler.currentSettings)) {
-            consoleHandler.setBackgroundTransitions(backgroundColorTransitionMS, colors);
+        if(this.equals(backend.getCurrentSettings())) {
+            backend.setBackgroundTransitions(backgroundColorTransitionMS, colors);
             if(deleteBackgroundColorQueueAfterUse)
                 backgroundColorQueue = new Color[]{};
         }
@@ -250,20 +331,73 @@ class TuiParent {
         this.deleteBackgroundColorQueueAfterUse = deleteBackgroundColorQueueAfterUse;
         this.backgroundColorQueueDuration = durationMS;
 
-        if(this.equals(consoleHandler.currentSettings)) {
-            consoleHandler.setBackgroundTransitions(durationMS, colors);
+        if(this.equals(backend.getCurrentSettings())) {
+            backend.setBackgroundTransitions(durationMS, colors);
             if(deleteBackgroundColorQueueAfterUse)
                 backgroundColorQueue = new Color[]{};
         }
     }
 
-    /** Applies the settings in this Tui to the associated JFrame.
+    /**
+     * Gets the completion source for the names of this Tui's commands, indexing them the first time it's called - so switching
+     * between Tui objects doesn't rebuild it.
+     * @return The completion source of this Tui's commands.
+     */
+    public synchronized CompletionSource getCompletionSource() {
+        if(completionSource == null)
+            completionSource = new PrefixCompletionSource(commandTable.getNames());
+        return completionSource;
+    }
+
+    /** Applies the settings in this Tui to the associated JFrame (or backend).
      *  This method gets called when any of the <b>print</b> methods or <b>nextFoo</b> methods are used. */
     public void applySettingsToFrame() {
-        try {
-            SwingUtilities.invokeAndWait(() -> consoleHandler.setConsoleSettings(this, true) );
-        } catch (Exception e) {
-            e.printStackTrace();
+        backend.setConsoleSettings(this, true);
+    }
+
+    /**
+     * Compiles the commandMap again, so changes made to it since this Tui was built take effect - along with the
+     * completion of command names. Does nothing if the builder was given a CommandTable.<br>
+     * The map is copied first, but mustn't be modified by another thread while it's copied.
+     */
+    public void recompileCommandMap() {
+        if(!compileCommandMap)
+            return;
+
+        CommandTable table = CommandTable.compile(new LinkedHashMap<>(commandMap));
+        synchronized(this) {
+            commandTable = table;
+            completionSource = null;
+        }
+        if(backend.getCurrentSettings() == this) // hand the console the new completion source
+            backend.setConsoleSettings(this, false);
+    }
+
+    /**
+     * Processes a line the user entered with this Tui's processor, then with the command it starts with
+     * (or processUnrecognizedCommand).
+     * @param console The console the user entered the line in, or null for a headless backend.
+     * @param raw The line the user entered.
+     * @param args The line split into arguments.
+     */
+    void processInput(Console console, String raw, String... args) {
+        processor.process(console, raw, args);
+
+        // process commands and their arguments
+        if(!commandTable.process(console, raw, args))
+            processUnrecognizedCommand.process(console, raw, args);
+    }
+
+    /**
+     * Adds an empty log to allUserInputLogs for a new console.
+     * @param capacity The number of lines the log keeps.
+     * @return The key of the log, the console's uniqueID.
+     */
+    static int createInputLog(int capacity) {
+        synchronized(allUserInputLogs) {
+            int uniqueID = allUserInputLogs.size();
+            allUserInputLogs.put(uniqueID, new InputLog(capacity));
+            return uniqueID;
         }
     }
 
@@ -431,119 +565,172 @@ class TuiParent {
      * @param newLine Whether or not to print a newline at the end.
      */
     private void print(String text, Optional<Color> color, Optional<Integer> pauseTime, boolean newLine) {
-        if(!consoleHandler.getCurrentSettings().equals(this))
+        if(!this.equals(backend.getCurrentSettings()))
             applySettingsToFrame();
 
-        if(color.isPresent()) { // set the console's color
+        if(color.isPresent()) // update the default color
+            defaultForegroundColor = resetColorAfterEachMsg.get() ? defaultForegroundColor : color.get();
+
+        if(charPrintDelayMS > 0) {
+            if(outputQueue != null) // print anything still queued before the delayed text
+                invokeAndWait(outputQueue::flush);
+            printCharByChar(text, color, newLine);
+        }
+        else if(outputQueue != null)
+            outputQueue.offer(toStyledRuns(text, color, newLine));
+        else
+            backend.print(toStyledRuns(text, color, newLine));
+
+        if(pauseTime.isPresent()) {
             try {
-                SwingUtilities.invokeAndWait(() -> consoleHandler.getConsole().setConsoleForeground(color.get()));
-                defaultForegroundColor = resetColorAfterEachMsg.get() ? defaultForegroundColor : color.get(); // update the default color
-            } catch (Exception e) { e.printStackTrace(); }
+                Thread.sleep(pauseTime.get());
+            } catch (InterruptedException e) { e.printStackTrace(); }
         }
-        text = ColorUtil.replaceAllAnsiWithHex(text, defaultForegroundColor);
+    }
+
+    /**
+     * Splits a message into runs of a single color, so the whole message can be printed with one EDT task.
+     * @param text The text to print, with hex and ANSI color codes.
+     * @param color The color the text starts in, if any.
+     * @param newLine Whether to end the message with a newline.
+     * @return The runs to print, including the color reset after the message if resetColorAfterEachMsg is true.
+     */
+    private List<StyledRun> toStyledRuns(String text, Optional<Color> color, boolean newLine) {
+        List<StyledRun> runs = new ArrayList<>();
+        color.ifPresent(c -> runs.add(new StyledRun(c, "")));
+
+        ColorTokenizer.tokenize(text, defaultForegroundColor, (runColor, source, start, end) ->
+                runs.add(new StyledRun(runColor, source.substring(start, end))));
+
+        if(newLine)
+            runs.add(new StyledRun(null, "\n"));
+        if(resetColorAfterEachMsg.get())
+            runs.add(new StyledRun(defaultForegroundColor, ""));
+        return runs;
+    }
+
+    /**
+     * Prints text to the console one character at a time, sleeping charPrintDelayMS after each character.
+     * @param text The text to print, with hex and ANSI color codes.
+     * @param color The color the text starts in, if any.
+     * @param newLine Whether to end the message with a newline.
+     */
+    private void printCharByChar(String text, Optional<Color> color, boolean newLine) {
+        color.ifPresent(backend::setForeground); // set the console's color
 
-        // print the text, setting the color after each detected hex code
-        for(int i = 0; i < text.length(); i++) {
-            // text that hasn't been printed yet
-            String remaining = text.substring(i);
+        // print the text, setting the color before each run that follows a hex or ANSI code
+        ColorTokenizer.tokenize(text, defaultForegroundColor, (runColor, source, start, end) -> {
+            if(runColor != null)
+                backend.setForeground(runColor);
 
-            // if the remaining text starts with a hex, set the color, move i past the hex, and continue
-            if(StringUtil.startsWith(remaining, hexRegex)) {
+            for(int i = start; i < end; i++) {
+                backend.print(List.of(new StyledRun(null, String.valueOf(source.charAt(i)))));
                 try {
-                    SwingUtilities.invokeAndWait(() -> consoleHandler.getConsole()
-                            .setConsoleForeground(Color.decode("#" + remaining.substring(2, 8))));
+                    Thread.sleep(charPrintDelayMS);
                 } catch (Exception e) { e.printStackTrace(); }
-                i += 7;
-                continue;
-            }
-
-            // if the remaining text contains a hex code, print only the text before it
-            boolean hasHex = StringUtil.contains(remaining, hexRegex);
-            int singleColorSubstringEndIndex = hasHex ? StringUtil.indexOf(remaining, hexRegex).get() : remaining.length();
-
-            // string to print
-            String singleColorSubstring = remaining.substring(0, singleColorSubstringEndIndex);
-
-            // if there's a char print delay, print the chars one at a time
-            if(charPrintDelayMS > 0) {
-                for(char c : singleColorSubstring.toCharArray()) {
-                    try {
-                        SwingUtilities.invokeAndWait(() -> consoleHandler.getConsole().print(String.valueOf(c)) );
-                        Thread.sleep(charPrintDelayMS);
-                    } catch (Exception e) { e.printStackTrace(); }
-                }
-            }
-            else { // print the whole singleColorSubstring
-                SwingUtilities.invokeLater(() -> consoleHandler.getConsole().print(singleColorSubstring) );
             }
-            // move i to point after the printed text (accounting for i++ in the for loop header)
-            i += singleColorSubstring.length() - 1;
-        }
+        });
 
         if(newLine)
             println();
 
-        if(resetColorAfterEachMsg.get()) {
-            try {
-                SwingUtilities.invokeAndWait(() -> consoleHandler.getConsole().setConsoleForeground(defaultForegroundColor));
-            } catch (Exception e) { e.printStackTrace(); }
-        }
+        if(resetColorAfterEachMsg.get())
+            backend.setForeground(defaultForegroundColor);
+    }
 
-        if(pauseTime.isPresent()) {
-            try {
-                Thread.sleep(pauseTime.get());
-            } catch (InterruptedException e) { e.printStackTrace(); }
+    /** Runs a task on the EDT and waits for it to finish - runs it directly if already on the EDT. */
+    static void invokeAndWait(Runnable task) {
+        if(SwingUtilities.isEventDispatchThread()) {
+            task.run();
+            return;
         }
+
+        try {
+            SwingUtilities.invokeAndWait(task);
+        } catch (Exception e) { e.printStackTrace(); }
     }
 
     /** Prints a newline to the console. */
     public void println() {
-        if(!consoleHandler.getCurrentSettings().equals(this))
+        if(!this.equals(backend.getCurrentSettings()))
             applySettingsToFrame();
 
-        SwingUtilities.invokeLater(() -> consoleHandler.getConsole().println());
+        if(outputQueue != null)
+            outputQueue.offer(List.of(new StyledRun(null, "\n")));
+        else
+            backend.print(List.of(new StyledRun(null, "\n")));
+    }
+
+    /**
+     * Sets the console's current foreground color - queued behind any pending output in async output mode,
+     * otherwise set immediately on the EDT.
+     * @param color The color to set.
+     */
+    private void setConsoleForeground(Color color) {
+        if(outputQueue != null)
+            outputQueue.offer(List.of(new StyledRun(color, "")));
+        else
+            backend.setForeground(color);
     }
 
     /**
      * Waits for the user to enter a line of text, then returns it.
-     * @return The user's next input.
+     * @return The user's next input, or null if the thread was interrupted first - its interrupt flag is left set.
      */
     public String nextLine() {
-        if(!consoleHandler.getCurrentSettings().equals(this))
+        if(!this.equals(backend.getCurrentSettings()))
             applySettingsToFrame();
 
-        final int initialInputLogSize = userInputLog.size();
+        try {
+            return backend.getInput().take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
 
-        // TODO make an implementation using wait() and notify()
-        while(true) {
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+    /**
+     * Waits up to the given timeout for the user to enter a line of text.
+     * @param timeout How long to wait for the user's input.
+     * @return The user's next input, or Optional.empty() if the timeout elapsed or the thread was interrupted first.
+     */
+    public Optional<String> nextLine(Duration timeout) {
+        if(!this.equals(backend.getCurrentSettings()))
+            applySettingsToFrame();
 
-            // check if the user has entered a line of text inside this.frame TuiFrame
-            if (initialInputLogSize < userInputLog.size())
-                return userInputLog.get(userInputLog.size() - 1);
+        try {
+            return Optional.ofNullable(backend.getInput().poll(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
         }
     }
 
+    /**
+     * Returns immediately with a future that's completed by the user's next line of text - no thread waits for it,
+     * so it can be composed or joined from any thread.
+     * @return A future completed with the user's next input.
+     */
+    public CompletableFuture<String> nextLineAsync() {
+        if(!this.equals(backend.getCurrentSettings()))
+            applySettingsToFrame();
+
+        return backend.getInput().next();
+    }
+
     /**
      * Waits for the user to enter a line of text, then returns it.
      * @param color What color to make the user's input - if resetColorAfterEachMessage is false, this color will become
      *              the default foreground color.
-     * @return The user's next input.
+     * @return The user's next input, or null if the thread was interrupted first.
      */
     public String nextLine(Color color) {
-        if(!consoleHandler.getCurrentSettings().equals(this))
+        if(!this.equals(backend.getCurrentSettings()))
             applySettingsToFrame();
 
-        try { // set the color
-            SwingUtilities.invokeAndWait(() -> consoleHandler.getConsole().setConsoleForeground(color));
-            defaultForegroundColor = resetColorAfterEachMsg.get() ? defaultForegroundColor : color;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        // set the color
+        setConsoleForeground(color);
+        defaultForegroundColor = resetColorAfterEachMsg.get() ? defaultForegroundColor : color;
 
         String input = nextLine();
         setForegroundColor(defaultForegroundColor);
@@ -556,29 +743,15 @@ class TuiParent {
      * @throws InputMismatchException If the user's input is not parsable as an int.
      */
     public int nextInt() throws InputMismatchException {
-        if(!consoleHandler.getCurrentSettings().equals(this))
+        if(!this.equals(backend.getCurrentSettings()))
             applySettingsToFrame();
 
-        final int initialInputLogSize = userInputLog.size();
-
-        // TODO make an implementation using wait() and notify()
-        while(true) {
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-
-            // check if the user has entered a line of text inside this.frame TuiFrame
-            if (initialInputLogSize < userInputLog.size()) {
-                String input = userInputLog.get(userInputLog.size() - 1);
-                try {
-                    return Integer.parseInt(input);
-                } catch(NumberFormatException e) {
-                    throw new InputMismatchException(
-                            String.format("The user's input '%s' is not parsable as an int.%n%s", input, e.getMessage()));
-                }
-            }
+        String input = nextLine();
+        try {
+            return Integer.parseInt(input);
+        } catch(NumberFormatException e) {
+            throw new InputMismatchException(
+                    String.format("The user's input '%s' is not parsable as an int.%n%s", input, e.getMessage()));
         }
     }
 
@@ -590,15 +763,12 @@ class TuiParent {
      * @throws InputMismatchException If the user's input is not parsable as an int.
      */
     public int nextInt(Color color) throws InputMismatchException {
-        if(!consoleHandler.getCurrentSettings().equals(this))
+        if(!this.equals(backend.getCurrentSettings()))
             applySettingsToFrame();
 
-        try { // set the color
-            SwingUtilities.invokeAndWait(() -> consoleHandler.getConsole().setConsoleForeground(color));
-            defaultForegroundColor = resetColorAfterEachMsg.get() ? defaultForegroundColor : color;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        // set the color
+        setConsoleForeground(color);
+        defaultForegroundColor = resetColorAfterEachMsg.get() ? defaultForegroundColor : color;
 
         int input = nextInt();
         setForegroundColor(defaultForegroundColor);
@@ -0,0 +1,122 @@
+package com.bennavetta.jconsole.tui.console;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyleContext;
+import java.awt.*;
+import java.util.Arrays;
+import java.util.Enumeration;
+
+/**
+ * Interns the attribute sets of styled text runs, keyed by (foreground, background, font flags), so every run with
+ * the same style shares one immutable AttributeSet instead of copying a mutable one.<br><br>
+ * The sets are built on top of a base set (the console's font attributes) with the StyleContext of the document;
+ * the document's leaf elements then keep the very same instance. The cache is cleared whenever the base set changes,
+ * and when it fills up.<br>
+ * Package-private
+ */
+class AttributeCache {
+
+    public static final int BOLD = 1, ITALIC = 2, UNDERLINE = 4, STRIKETHROUGH = 8;
+
+    /** Power of 2; the cache is cleared once it's 3/4 full */
+    private static final int CAPACITY = 1024;
+
+    private final StyleContext context;
+
+    /** The base attributes, without a foreground */
+    private AttributeSet base = SimpleAttributeSet.EMPTY;
+
+    private final long[] keys = new long[CAPACITY];
+    private final AttributeSet[] values = new AttributeSet[CAPACITY];
+    private int size;
+
+    /** @param context The StyleContext of the document the attribute sets are inserted into. */
+    public AttributeCache(StyleContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Sets the attributes that every cached set is built on. The foreground is ignored; the cache is only cleared if
+     * any other attribute differs from the current base.
+     * @param attrs The base attributes, e.g. the console's font attributes - copied, not kept.
+     */
+    public void setBase(AttributeSet attrs) {
+        if(sameBase(attrs))
+            return;
+
+        SimpleAttributeSet copy = new SimpleAttributeSet(attrs);
+        copy.removeAttribute(StyleConstants.Foreground);
+        base = copy;
+        clear();
+    }
+
+    /**
+     * @param foreground The color of the text.
+     * @param background The background color of the text, or null for the base background.
+     * @param flags A combination of BOLD, ITALIC, UNDERLINE and STRIKETHROUGH. A flag that's not set leaves the
+     *              base attribute as it is.
+     * @return The shared, immutable attribute set with the given style.
+     */
+    public AttributeSet get(Color foreground, Color background, int flags) {
+        long key = ((long) foreground.getRGB() << 32) | flags;
+        if(background != null)
+            key |= (1L << 31) | ((background.getRGB() & 0xFFFFFFL) << 4);
+
+        int mask = CAPACITY - 1;
+        int i = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while(values[i] != null) {
+            if(keys[i] == key)
+                return values[i];
+            i = (i + 1) & mask;
+        }
+
+        AttributeSet attrs = create(foreground, background, flags);
+        if(size >= CAPACITY * 3 / 4) {
+            clear();
+            i = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        }
+        keys[i] = key;
+        values[i] = attrs;
+        size++;
+        return attrs;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private AttributeSet create(Color foreground, Color background, int flags) {
+        MutableAttributeSet attrs = new SimpleAttributeSet(base);
+        StyleConstants.setForeground(attrs, foreground);
+        if(background != null)
+            StyleConstants.setBackground(attrs, background);
+        if((flags & BOLD) != 0)
+            StyleConstants.setBold(attrs, true);
+        if((flags & ITALIC) != 0)
+            StyleConstants.setItalic(attrs, true);
+        if((flags & UNDERLINE) != 0)
+            StyleConstants.setUnderline(attrs, true);
+        if((flags & STRIKETHROUGH) != 0)
+            StyleConstants.setStrikeThrough(attrs, true);
+        return context.addAttributes(context.getEmptySet(), attrs);
+    }
+
+    /** @return True if the attributes equal the base, ignoring the foreground. */
+    private boolean sameBase(AttributeSet attrs) {
+        int count = 0;
+        for(Enumeration<?> names = attrs.getAttributeNames(); names.hasMoreElements(); ) {
+            Object name = names.nextElement();
+            if(name == StyleConstants.Foreground)
+                continue;
+            if(!attrs.getAttribute(name).equals(base.getAttribute(name)))
+                return false;
+            count++;
+        }
+        return count == base.getAttributeCount();
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.bennavetta.jconsole.tui.console;
+
+import javax.swing.text.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * A line of a document painted as a row of fixed width character cells - the line view of a VirtualLinesView in
+ * LineLayout.CELL_GRID mode.<br><br>
+ * The line is read once into parallel arrays of code points, packed ARGB colors and style flags, and its glyphs are
+ * copied from the GlyphAtlas of their font and color into images of CHUNK_CELLS cells each, rendered when first painted.
+ * Painting then fills the backgrounds, paints the selection, and draws the chunks in the clip - so a wide line only
+ * keeps the pixels of the columns that were on screen. The view is replaced when its line changes, so only changed rows
+ * are read, rendered and repainted.
+ *
+ * @author woodrow73
+ */
+class CellRowView extends View {
+
+    private static final byte BOLD = 1, ITALIC = 2, UNDERLINE = 4, STRIKETHROUGH = 8;
+
+    /** The number of cells rendered into each image of the row */
+    private static final int CHUNK_CELLS = 128;
+
+    /** Reused to build each chunk's pixels - only used on the EDT */
+    private static int[] chunkPixels = new int[0];
+
+    /** The code point of each cell; 0 for the second half of a surrogate pair */
+    private int[] codePoints;
+
+    /** The foreground of each cell, and its background or 0 for none */
+    private int[] foregrounds, backgrounds;
+
+    private byte[] styles;
+
+    /** The number of cells - the length of the line without its line break */
+    private int length;
+
+    /** The plain font of the line, and its metrics - null until the line is read */
+    private Font font;
+    private FontMetrics metrics;
+
+    /** The plain, bold, italic and bold italic variants of the font, by their Font style bits */
+    private final Font[] fonts = new Font[4];
+
+    /** The glyphs and lines of each chunk of the row, rendered at rowScale - null until the chunk is painted */
+    private BufferedImage[] chunks;
+    private double rowScale;
+
+    /** The last color painted, reused while the next one has the same ARGB value */
+    private Color color;
+
+    CellRowView(Element line) {
+        super(line);
+    }
+
+    /** Reads the characters and attributes of the line into the cell arrays. */
+    private void load() {
+        if(font != null)
+            return;
+
+        Element line = getElement();
+        StyledDocument doc = (StyledDocument) getDocument();
+        int start = line.getStartOffset();
+        length = Math.max(0, Math.min(line.getEndOffset(), doc.getLength()) - start);
+        if(length > 0 && line.getEndOffset() <= doc.getLength())
+            length--; // the line break
+
+        codePoints = new int[length];
+        foregrounds = new int[length];
+        backgrounds = new int[length];
+        styles = new byte[length];
+
+        Segment text = new Segment();
+        try {
+            doc.getText(start, length, text);
+        } catch(BadLocationException e) {
+            e.printStackTrace();
+        }
+        for(int i = 0; i < length; i++) {
+            char c = text.array[text.offset + i];
+            if(Character.isHighSurrogate(c) && i + 1 < length) {
+                codePoints[i] = Character.toCodePoint(c, text.array[text.offset + i + 1]);
+                codePoints[++i] = 0;
+            }
+            else {
+                codePoints[i] = c;
+            }
+        }
+
+        for(int leafIndex = 0; leafIndex < line.getElementCount(); leafIndex++) {
+            Element leaf = line.getElement(leafIndex);
+            AttributeSet attrs = leaf.getAttributes();
+            int foreground = StyleConstants.getForeground(attrs).getRGB();
+            int background = attrs.isDefined(StyleConstants.Background) ?
+                    StyleConstants.getBackground(attrs).getRGB() : 0;
+            byte style = (byte) ((StyleConstants.isBold(attrs) ? BOLD : 0) | (StyleConstants.isItalic(attrs) ? ITALIC : 0) |
+                    (StyleConstants.isUnderline(attrs) ? UNDERLINE : 0) |
+                    (StyleConstants.isStrikeThrough(attrs) ? STRIKETHROUGH : 0));
+
+            for(int i = Math.max(0, leaf.getStartOffset() - start); i < Math.min(length, leaf.getEndOffset() - start); i++) {
+                foregrounds[i] = foreground;
+                backgrounds[i] = background;
+                styles[i] = style;
+            }
+
+            if(leafIndex == 0)
+                font = doc.getFont(attrs).deriveFont(Font.PLAIN);
+        }
+        if(font == null)
+            font = getContainer().getFont();
+        metrics = getContainer().getFontMetrics(font);
+    }
+
+    private int getCellWidth() {
+        return metrics.charWidth('m');
+    }
+
+    @Override
+    public float getPreferredSpan(int axis) {
+        load();
+        return axis == X_AXIS ? (float) length * getCellWidth() : metrics.getHeight();
+    }
+
+    @Override
+    public void paint(Graphics g, Shape allocation) {
+        load();
+        Rectangle alloc = allocation.getBounds();
+        Rectangle clip = g.getClipBounds();
+        if(clip == null)
+            clip = alloc;
+
+        int cellWidth = getCellWidth();
+        int first = Math.max(0, (clip.x - alloc.x) / cellWidth),
+                last = Math.min(length - 1, (clip.x + clip.width - alloc.x) / cellWidth);
+
+        // backgrounds, a run of cells at a time
+        for(int i = first; i <= last; ) {
+            int end = i + 1;
+            while(end <= last && backgrounds[end] == backgrounds[i])
+                end++;
+            if(backgrounds[i] != 0) {
+                g.setColor(getColor(backgrounds[i]));
+                g.fillRect(alloc.x + i * cellWidth, alloc.y, (end - i) * cellWidth, alloc.height);
+            }
+            i = end;
+        }
+
+        // the selection, which LabelViews paint the same way
+        Container host = getContainer();
+        if(host instanceof JTextComponent) {
+            Highlighter highlighter = ((JTextComponent) host).getHighlighter();
+            if(highlighter instanceof LayeredHighlighter)
+                ((LayeredHighlighter) highlighter).paintLayeredHighlights(g, getStartOffset(), getEndOffset(), allocation,
+                        (JTextComponent) host, this);
+        }
+
+        double scale = ((Graphics2D) g).getTransform().getScaleX();
+        if(chunks == null || rowScale != scale) {
+            chunks = new BufferedImage[(length + CHUNK_CELLS - 1) / CHUNK_CELLS];
+            rowScale = scale;
+        }
+        for(int chunk = first / CHUNK_CELLS; chunk <= last / CHUNK_CELLS && last >= 0; chunk++) {
+            if(chunks[chunk] == null)
+                chunks[chunk] = renderChunk(chunk, scale);
+            int start = chunk * CHUNK_CELLS, end = Math.min(length, start + CHUNK_CELLS);
+            BufferedImage image = chunks[chunk];
+            g.drawImage(image, alloc.x + start * cellWidth, alloc.y, alloc.x + end * cellWidth,
+                    alloc.y + metrics.getHeight(), 0, 0, image.getWidth(), image.getHeight(), null);
+        }
+    }
+
+    /** @return The color with an ARGB value - the same object as last time if the value didn't change. */
+    private Color getColor(int argb) {
+        if(color == null || color.getRGB() != argb)
+            color = new Color(argb, true);
+        return color;
+    }
+
+    /** @return The image of a chunk's glyphs and lines, copying each glyph's pixels from its GlyphAtlas. */
+    private BufferedImage renderChunk(int chunk, double scale) {
+        int start = chunk * CHUNK_CELLS, end = Math.min(length, start + CHUNK_CELLS);
+        int cellWidth = GlyphAtlas.toPixels(getCellWidth(), scale);
+        BufferedImage image = new BufferedImage((end - start) * cellWidth,
+                GlyphAtlas.toPixels(metrics.getHeight(), scale), BufferedImage.TYPE_INT_ARGB);
+        // the pixels are set through the raster afterwards, so the image can still be cached on the graphics card
+        int pixelCount = image.getWidth() * image.getHeight();
+        if(chunkPixels.length < pixelCount)
+            chunkPixels = new int[pixelCount];
+        int[] pixels = chunkPixels;
+        Arrays.fill(pixels, 0, pixelCount, 0);
+
+        GlyphAtlas atlas = null;
+        int atlasForeground = 0, atlasStyle = 0;
+        boolean lines = false;
+        for(int i = start; i < end; i++) {
+            lines |= (styles[i] & (UNDERLINE | STRIKETHROUGH)) != 0;
+            if(codePoints[i] <= ' ')
+                continue;
+
+            // the cells of a run share an atlas
+            int style = styles[i] & (BOLD | ITALIC);
+            if(atlas == null || foregrounds[i] != atlasForeground || style != atlasStyle) {
+                atlas = GlyphAtlas.get(getFont(styles[i]), foregrounds[i], scale, metrics);
+                atlasForeground = foregrounds[i];
+                atlasStyle = style;
+            }
+            atlas.copyGlyph(codePoints[i], pixels, (i - start) * cellWidth, image.getWidth(), pixelCount);
+        }
+        image.getRaster().setDataElements(0, 0, image.getWidth(), image.getHeight(), pixels);
+
+        if(lines) {
+            Graphics2D g = image.createGraphics();
+            g.scale(scale, scale);
+            int width = getCellWidth(), baseline = metrics.getAscent(), strike = baseline - metrics.getAscent() / 3;
+            for(int i = start; i < end; i++) {
+                int x = (i - start) * width;
+                g.setColor(getColor(foregrounds[i]));
+                if((styles[i] & UNDERLINE) != 0)
+                    g.drawLine(x, baseline + 1, x + width - 1, baseline + 1);
+                if((styles[i] & STRIKETHROUGH) != 0)
+                    g.drawLine(x, strike, x + width - 1, strike);
+            }
+            g.dispose();
+        }
+        return image;
+    }
+
+    /** @return The variant of the line's font for a cell's style. */
+    private Font getFont(byte style) {
+        int fontStyle = style & (BOLD | ITALIC); // the same bits as Font.BOLD and Font.ITALIC
+        if(fonts[fontStyle] == null)
+            fonts[fontStyle] = font.deriveFont(fontStyle);
+        return fonts[fontStyle];
+    }
+
+    @Override
+    public Shape modelToView(int pos, Shape a, Position.Bias b) throws BadLocationException {
+        load();
+        Rectangle alloc = a.getBounds();
+        int cell = Math.max(0, Math.min(length, pos - getStartOffset()));
+        return new Rectangle(alloc.x + cell * getCellWidth(), alloc.y, 0, alloc.height);
+    }
+
+    @Override
+    public int viewToModel(float x, float y, Shape a, Position.Bias[] biasReturn) {
+        load();
+        Rectangle alloc = a.getBounds();
+        int cell = Math.max(0, Math.min(length, Math.round((x - alloc.x) / getCellWidth())));
+        biasReturn[0] = Position.Bias.Forward;
+        return getStartOffset() + cell;
+    }
+
+}
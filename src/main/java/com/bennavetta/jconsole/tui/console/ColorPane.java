@@ -1,10 +1,10 @@
 package com.bennavetta.jconsole.tui.console;
 
-import com.bennavetta.jconsole.util.ColorUtil;
-
 import javax.swing.*;
 import javax.swing.text.*;
 import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
 
 /**
  * Prints text to a JTextPane in color - either using ANSI escape sequences or a Color object.<br><br>
@@ -14,86 +14,139 @@ public class ColorPane extends JTextPane {
 
     private Console console;
 
-    private Color colorCurrent;
-    private String remaining = "";
+    /** Parses ANSI escape sequences and holds the current text style between calls to appendANSI() */
+    private final SgrParser sgr;
+
+    /** Collects the runs of each append so they're inserted into the document in one batch */
+    private final StyledRunBuffer runs = new StyledRunBuffer();
+
+    /** How the document's lines are laid out */
+    private final LineLayout lineLayout;
+
+    /** Throttles repaints and scrolling to the caret - null while JTextPane's constructor runs */
+    private final RepaintScheduler repaintScheduler;
 
     public ColorPane(Console console, Color foreground) {
+        this(console, foreground, LineLayout.WRAPPED);
+    }
+
+    /**
+     * @param console The console of this pane.
+     * @param foreground The color of text printed without another color.
+     * @param lineLayout How to lay out the lines of documents set after construction - VIRTUAL and CELL_GRID use a
+     *                   VirtualLinesView, which only lays out and paints the lines in view.
+     */
+    public ColorPane(Console console, Color foreground, LineLayout lineLayout) {
         this.console = console;
-        this.colorCurrent = new Color(foreground.getRGB());
+        this.sgr = new SgrParser(foreground);
+        this.lineLayout = lineLayout;
+        this.repaintScheduler = new RepaintScheduler(this, RepaintScheduler.getDisplayFrameInterval());
+
+        // scrolls to the caret once per frame rather than once per write
+        DefaultCaret caret = new DefaultCaret() {
+            @Override
+            protected void adjustVisibility(Rectangle nloc) {
+                if(!repaintScheduler.deferScrollToCaret())
+                    super.adjustVisibility(nloc);
+            }
+        };
+        caret.setBlinkRate(getCaret().getBlinkRate());
+        setCaret(caret);
+    }
+
+    /**
+     * Sets how often the pane repaints while text is printed.
+     * @param frameInterval The minimum time between repaints in milliseconds, or 0 to repaint on every change.
+     *                      (default RepaintScheduler.getDisplayFrameInterval())
+     */
+    public void setRepaintInterval(int frameInterval) {
+        repaintScheduler.setFrameInterval(frameInterval);
     }
 
+    /** Merges the region into the next frame's repaint while repaints are throttled. */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        if(repaintScheduler == null || !repaintScheduler.deferRepaint(x, y, width, height))
+            super.repaint(tm, x, y, width, height);
+    }
+
+    /** Scrolls the caret into view - the auto-scroll of a write, deferred to the end of the frame. */
+    void scrollToCaret() {
+        try {
+            Rectangle2D caretBounds = modelToView2D(getCaretPosition());
+            if(caretBounds != null)
+                scrollRectToVisible(caretBounds.getBounds());
+        } catch(BadLocationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** A StyledEditorKit that lays out the section of the document with a VirtualLinesView, unless the lines wrap. */
+    @Override
+    protected EditorKit createDefaultEditorKit() {
+        return new StyledEditorKit() {
+            @Override
+            public ViewFactory getViewFactory() {
+                ViewFactory styledFactory = super.getViewFactory();
+                // called by JTextPane's constructor too, before lineLayout is set
+                return element -> lineLayout != null && lineLayout != LineLayout.WRAPPED &&
+                        AbstractDocument.SectionElementName.equals(element.getName()) ?
+                        new VirtualLinesView(element, lineLayout == LineLayout.CELL_GRID) : styledFactory.create(element);
+            }
+        };
+    }
+
+    /**
+     * Appends text in a single color to the end of the document and moves the caret after it.
+     * @param c The color of the text.
+     * @param s The text to append.
+     * @param attrs The attributes of the text - its foreground is set to the color.
+     */
     public void append(Color c, String s, MutableAttributeSet attrs) {
         setColorCurrent(c);
         setCaretColor(c);
         StyleConstants.setForeground(attrs, c);
-        int len = getDocument().getLength(); // same value as getText().length();
-        setCaretPosition(len);  // place caret at the end (with no selection)
-        setCharacterAttributes(attrs, false);
-        replaceSelection(s); // there is no selection, so inserts at caret
+        AttributeCache cache = getAttributeCache();
+        cache.setBase(attrs);
+        runs.add(s, cache.get(c, null, 0));
+        try {
+            runs.appendTo(getDocument());
+        } catch(BadLocationException e) {
+            e.printStackTrace();
+        }
+        setCaretPosition(getDocument().getLength());
     }
 
-    public void appendANSI(String s, MutableAttributeSet attrs) { // convert ANSI color codes first
+    /**
+     * Appends text with ANSI escape sequences to the end of the document. Colors and attributes set by SGR sequences
+     * carry over to the next call, as does a sequence that's cut off at the end of the text.
+     * @param s The text to append.
+     * @param attrs The base attributes of the text (font, default color) - not modified.
+     */
+    public void appendANSI(String s, MutableAttributeSet attrs) {
         if(console.resetColorAfterEachMsg)
-            setColorCurrent(console.getForeground());
-
-        int aPos = 0;   // current char position in addString
-        int aIndex = 0; // index of next Escape sequence
-        int mIndex = 0; // index of "m" terminating Escape sequence
-        String tmpString = "";
-        boolean stillSearching = true; // true until no more Escape sequences
-        String addString = remaining + s;
-        remaining = "";
-
-        if (addString.length() > 0) {
-            aIndex = addString.indexOf("\u001B"); // find first escape
-            if (aIndex == -1) { // no escape/color change in this string, so just send it with current color
-                append(colorCurrent, addString, attrs);
-                return;
-            }
-            // otherwise There is an escape character in the string, so we must process it
-
-            if (aIndex > 0) { // Escape is not first char, so send text up to first escape
-                tmpString = addString.substring(0,aIndex);
-                append(colorCurrent, tmpString, attrs);
-                aPos = aIndex;
-            }
-            // aPos is now at the beginning of the first escape sequence
-
-            stillSearching = true;
-            while (stillSearching) {
-                mIndex = addString.indexOf("m",aPos); // find the end of the escape sequence
-                if (mIndex < 0) { // the buffer ends halfway through the ansi string!
-                    remaining = addString.substring(aPos,addString.length());
-                    stillSearching = false;
-                    continue;
-                }
-                else {
-                    tmpString = addString.substring(aPos,mIndex+1);
-                    colorCurrent = ColorUtil.ansiToColor(tmpString);
-                }
-                aPos = mIndex + 1;
-                // now we have the color, send text that is in that color (up to next escape)
-
-                aIndex = addString.indexOf("\u001B", aPos);
-
-                if (aIndex == -1) { // if that was the last sequence of the input, send remaining text
-                    tmpString = addString.substring(aPos,addString.length());
-                    append(colorCurrent, tmpString, attrs);
-                    stillSearching = false;
-                    continue; // jump out of loop early, as the whole string has been sent now
-                }
-
-                // there is another escape sequence, so send part of the string and prepare for the next
-                tmpString = addString.substring(aPos,aIndex);
-                aPos = aIndex;
-                append(colorCurrent, tmpString, attrs);
-
-            } // while there's text in the input buffer
+            sgr.reset(console.getForeground());
+        sgr.setDefaultForeground(console.getForeground());
+
+        AttributeCache cache = getAttributeCache();
+        cache.setBase(attrs);
+        Color background = getBackground();
+        sgr.parse(s, (parser, text, start, end) -> runs.add(text, start, end, parser.attributes(cache, background)));
+        try {
+            runs.appendTo(getDocument()); // all the runs in one batch
+        } catch(BadLocationException e) {
+            e.printStackTrace();
         }
+        setCaretColor(sgr.getForeground());
+    }
+
+    /** @return The attribute set cache of the console's document. */
+    private AttributeCache getAttributeCache() {
+        return ((ConsoleDocument) getDocument()).getAttributeCache();
     }
 
     protected void setColorCurrent(Color c) {
-        colorCurrent = new Color(c.getRGB());
+        sgr.setForeground(c);
     }
 
-}
\ No newline at end of file
+}
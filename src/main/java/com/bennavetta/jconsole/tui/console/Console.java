@@ -19,6 +19,8 @@ package com.bennavetta.jconsole.tui.console;
 
 import com.bennavetta.jconsole.completion.CompletionSource;
 import com.bennavetta.jconsole.commands.InputProcessor;
+import com.bennavetta.jconsole.history.CommandHistory;
+import com.bennavetta.jconsole.history.MemoryCommandHistory;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -30,8 +32,11 @@ import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.*;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class Console extends JScrollPane implements KeyListener, MouseWheelListener, ComponentListener, MouseListener {
 	private static final long serialVersionUID = -5260432287332359321L;
@@ -60,18 +65,30 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
 	
     private boolean wasInFocus = true;	// Used to focus the screen when typing/scrolling.
 	
-	private ArrayList<String> prompts = new ArrayList<String>();                // List of previously run commands
+	private final CommandHistory sessionHistory = new MemoryCommandHistory();   // Previously run commands, if no other history is set
+    private CommandHistory history = sessionHistory;                       // Previously run commands
    	private ArrayList<String> DOCUMENT_HARDCOPY = new ArrayList<String>();      // List of all lines since last cls.
     private String currentCommand = "";                                    // The current command being written, constantly being updated
     private int currentPosition = 0;                                       // The line, as referenced in "DOCUMENT_HARDCOPY" that is at the top of the window
-    private int currentCommandnum = 0;                                     // The current command number, as referenced in "prompts," that the user is
-                                                                           //  accessing, based on arrow keys.
+    private int currentCommandnum = -1;                                    // The current command number, as referenced in "history," that the user is
+                                                                           //  accessing, based on arrow keys - or -1 while not browsing it.
+    private boolean searching = false;                                     // Whether a reverse search (Ctrl+R) is running
+    private final StringBuilder searchQuery = new StringBuilder();         // The text the reverse search looks for
+    private int searchMatch = -1;                                          // The index in "history" of the match, or -1 for none yet
+    private String searchOriginalInput = "";                               // The input when the search started, restored if it's cancelled
 	
 	private InputProcessor[] processors = { InputProcessor.NO_OP };		   // Processors of input, as name implies.
+
+    private Executor processorExecutor;                                    // Runs the processors off the EDT, or null to run them on it
+    private CompletableFuture<Void> processing = CompletableFuture.completedFuture(null); // Processing of the last line entered
 	
 	private CompletionSource completionSource = new NoOpCompletionSource();
+
+    private CompletableFuture<List<String>> pendingCompletion;     // The completion running for the last TAB press
 	
 	private MutableAttributeSet defaultStyle;
+
+    private int maxScrollbackLines, maxScrollbackChars;    // Scrollback limits of the document, 0 for no limit
     
     /**
      * Class used internally, no need to understand it.
@@ -105,6 +122,23 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
 		this.completionSource = completionSource;
 	}
     
+	public CommandHistory getCommandHistory() {
+		return history;
+	}
+
+    /**
+     * Sets the commands the user browses with the UP and DOWN arrow keys, and that entered commands are added to.
+     *
+     * @param history the history to use, or null for the in-memory history of this console
+     */
+	public void setCommandHistory(CommandHistory history) {
+		CommandHistory newHistory = history != null ? history : sessionHistory;
+		if(newHistory != this.history) {
+			this.history = newHistory;
+			currentCommandnum = -1;
+		}
+	}
+
 	public InputProcessor[] getProcessors() {
 		return processors;
 	}
@@ -113,6 +147,21 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
 		this.processors = processors;
 	}
 
+	public Executor getProcessorExecutor() {
+		return processorExecutor;
+	}
+
+    /**
+     * Sets where the processors run when the user enters a line. Lines are still processed one at a time in the order
+     * they're entered, and the next prompt is written once all processors of a line have finished.
+     *
+     * @param processorExecutor the executor to run the processors on, e.g. a virtual thread per task executor or a
+     *                          bounded thread pool - or null to run them on the EDT, blocking it until they finish
+     */
+	public void setProcessorExecutor(Executor processorExecutor) {
+		this.processorExecutor = processorExecutor;
+	}
+
     /**
      * Initializes the console; a JScrollPane that contains a JTextPane.
      *
@@ -125,8 +174,25 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
      */
 	public Console(Color background, Color foreground, Font font, String prompt, boolean enableANSI,
                    boolean resetColorAfterEachMsg) {
+        this(background, foreground, font, prompt, enableANSI, resetColorAfterEachMsg, LineLayout.WRAPPED);
+    }
+
+    /**
+     * Initializes the console; a JScrollPane that contains a JTextPane.
+     *
+     * @param background the background color of the console
+     * @param foreground the foreground color of the console
+     * @param font the font of the console
+     * @param prompt the prompt of the console that precedes the user's input
+     * @param enableANSI whether ANSI colors should be enabled
+     * @param resetColorAfterEachMsg whether the console's text color should be reset after each message
+     * @param lineLayout how to lay out the lines - VIRTUAL and CELL_GRID only lay out and paint the lines in view,
+     *                   so a long scrollback doesn't slow down resizing and printing
+     */
+	public Console(Color background, Color foreground, Font font, String prompt, boolean enableANSI,
+                   boolean resetColorAfterEachMsg, LineLayout lineLayout) {
 	    super();
-        textPane = new ColorPane(this, foreground);
+        textPane = new ColorPane(this, foreground, lineLayout);
         this.enableANSI = enableANSI;
         this.resetColorAfterEachMsg = resetColorAfterEachMsg;
         this.foreground = foreground;
@@ -163,7 +229,27 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
         textPane.addMouseListener(this);
 	}
 
+    /**
+     * @return Whether the calling thread may change the console directly: the EDT, or any thread while the console
+     * isn't displayed. Processors may run on another thread (see setProcessorExecutor()), so the methods they'd call
+     * move themselves to the EDT otherwise.
+     */
+    private boolean isChangeThread() {
+        return SwingUtilities.isEventDispatchThread() || !isDisplayable();
+    }
+
+    /** Runs a change to the console on the EDT, and waits for it. */
+    private static void invokeAndWait(Runnable change) {
+        try {
+            SwingUtilities.invokeAndWait(change);
+        } catch (Exception e) { e.printStackTrace(); }
+    }
+
     public void setConsoleFont(Font font) { // if the method name is the same as super.setFont(), it will override the superclass's method causing a NPE.
+        if(!isChangeThread()) {
+            invokeAndWait(() -> setConsoleFont(font));
+            return;
+        }
         this.font = font;
         MutableAttributeSet attrs = textPane.getInputAttributes();
         StyleConstants.setFontFamily(attrs, font.getFamily());
@@ -172,7 +258,27 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
         StyleConstants.setBold(attrs, (font.getStyle() & Font.BOLD) != 0);
     }
 
+    /**
+     * Limits how much output the console keeps; the oldest lines are removed in bulk once a limit is exceeded.
+     *
+     * @param maxLines the maximum number of lines to keep, or 0 for no limit
+     * @param maxChars the maximum number of characters to keep, or 0 for no limit
+     */
+    public void setScrollbackLimit(int maxLines, int maxChars) {
+        if(!isChangeThread()) {
+            invokeAndWait(() -> setScrollbackLimit(maxLines, maxChars));
+            return;
+        }
+        this.maxScrollbackLines = maxLines;
+        this.maxScrollbackChars = maxChars;
+        doc.setScrollbackLimit(maxLines, maxChars);
+    }
+
     public void setConsoleForeground(Color foreground) { // if the method name is the same as super.setForeground(), it will override the superclass's method causing a NPE.
+        if(!isChangeThread()) {
+            invokeAndWait(() -> setConsoleForeground(foreground));
+            return;
+        }
         this.foreground = foreground;
         textPane.setColorCurrent(foreground);
         textPane.setCaretColor(foreground);
@@ -187,10 +293,15 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
      * @author pateljo@northvilleschools.net (valid until 06/18)
      */
     public void cls() {
+        if(!isChangeThread()) {
+            invokeAndWait(() -> cls());
+            return;
+        }
         doc = new ConsoleDocument(this, textPane);
         doc.setConsole(this);
         textPane.setDocument(doc);
         doc.setCaret(textPane.getCaret());
+        doc.setScrollbackLimit(maxScrollbackLines, maxScrollbackChars);
         DOCUMENT_HARDCOPY = new ArrayList<String>();
         DOCUMENT_HARDCOPY.add("");
         currentPosition = 0;
@@ -202,6 +313,10 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
      */
 	public void print(String text)
 	{
+		if(!isChangeThread()) {
+			invokeAndWait(() -> print(text));
+			return;
+		}
 		doc.write(text, defaultStyle, true);
 	}
 
@@ -211,6 +326,10 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
      */
     public void println(String text)
     {
+        if(!isChangeThread()) {
+            invokeAndWait(() -> println(text));
+            return;
+        }
         doc.write(text + "\n", defaultStyle, true);
     }
 
@@ -221,6 +340,10 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
      */
     public void print(String text, Color color)
     {
+        if(!isChangeThread()) {
+            invokeAndWait(() -> print(text, color));
+            return;
+        }
         doc.write(text, defaultStyle, color, true);
     }
 
@@ -230,13 +353,35 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
      * @param color what color to make the text
      */
     public void println(String text, Color color) {
+        if(!isChangeThread()) {
+            invokeAndWait(() -> println(text, color));
+            return;
+        }
         doc.write(text + "\n", defaultStyle, color, true);
     }
 
+    /** Prints a whole message to the console in one document write - ignores ANSI.
+     *  The console's foreground color is left at the color of the last run.
+     *
+     * @param runs the runs of text to print, in order
+     */
+    public void print(List<StyledRun> runs) {
+        if(!isChangeThread()) {
+            invokeAndWait(() -> print(runs));
+            return;
+        }
+        Color last = doc.write(runs, defaultStyle, true);
+        setConsoleForeground(last);
+    }
+
     /** Prints a newline to the console. */
     public void println() { println(""); }
 	
 	public void remove(int offset, int length) {
+		if(!isChangeThread()) {
+			invokeAndWait(() -> remove(offset, length));
+			return;
+		}
 		try {
             textPane.getStyledDocument().remove(offset, length);
 		} catch (BadLocationException e) {
@@ -250,44 +395,77 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
 	}
 
 	public void keyTyped(KeyEvent e) {
-		if(e.getKeyChar() == '\t') {
+		if(searching) {
+			//typed characters extend the search query instead of the input
+			e.consume();
+			char c = e.getKeyChar();
+			if(c >= ' ' && c != KeyEvent.VK_DELETE && !e.isControlDown()) {
+				searchQuery.append(c);
+				searchHistory(searchMatch >= 0 ? searchMatch + 1 : history.size());
+			}
+		}
+		else if(e.getKeyChar() == '\t') {
 			//don't append autocomplete tabs to the document
 			e.consume();
 		}
+		else {
+			//the input is changing, so a running completion is stale
+			cancelPendingCompletion();
+		}
 	}
 
 	public void keyPressed(KeyEvent e) {
 		// Is the cursor in a valid position?
         if (!doc.isCursorValid())
             doc.makeCursorValid();
+
+        //CTRL+R -> REVERSE SEARCH THE HISTORY, OR FIND AN OLDER MATCH IF ALREADY SEARCHING
+        if (e.getKeyCode() == KeyEvent.VK_R && e.isControlDown()) {
+            e.consume();
+            if (!searching)
+                startSearch();
+            else if (searchQuery.length() > 0)
+                searchHistory(searchMatch >= 0 ? searchMatch : history.size());
+            return;
+        }
+
+        if (searching && handleSearchKey(e))
+            return;
             
         //TAB -> AUTOCOMPLETE
         if(e.getKeyCode() == KeyEvent.VK_TAB) {
             e.consume();
             String input = doc.getUserInput().trim();
-            
-            List<String> completions = completionSource.complete(input);
-            if(completions == null || completions.isEmpty()) {
-                //no completions
-                Toolkit.getDefaultToolkit().beep();
-            }
-            else if(completions.size() == 1) { //only one match - print it
-                String toInsert = completions.get(0);
-                toInsert = toInsert.substring(input.length());
-                doc.write(toInsert, defaultStyle, false);
-                //don't trigger processing because the user might not agree with the autocomplete
-            }
-            else {
-                StringBuilder help = new StringBuilder();
-                help.append('\n');
-                for(String str : completions) {
-                    help.append(' ');
-                    help.append(str);
-                }
-                help.append("\n" + prompt);
-                doc.write(help.toString(), defaultStyle, true);
-                doc.write(input, defaultStyle, false);
-            }
+
+            // complete off the EDT; the result is dropped if the user types or presses TAB again first
+            cancelPendingCompletion();
+            CompletionSource source = completionSource;
+            CompletableFuture<List<String>> completion = source.completeAsync(input);
+            pendingCompletion = completion;
+            completion.whenComplete((completions, error) -> {
+                // the common prefix of the completions already found, rather than completing the input again
+                String common = error == null && completions != null && completions.size() > 1 ?
+                        CompletionSource.longestCommonPrefix(input, completions) : input;
+
+                Runnable apply = () -> {
+                    if(pendingCompletion != completion || !input.equals(doc.getUserInput().trim()))
+                        return; // stale - the input changed while completing
+                    pendingCompletion = null;
+
+                    if(error != null) {
+                        error.printStackTrace();
+                        Toolkit.getDefaultToolkit().beep();
+                    }
+                    else {
+                        applyCompletions(input, completions, common);
+                    }
+                };
+
+                if(SwingUtilities.isEventDispatchThread())
+                    apply.run();
+                else
+                    SwingUtilities.invokeLater(apply);
+            });
         }
         
         //UP ARROW -> FILL IN A PREV COMMAND
@@ -297,9 +475,14 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
             //Get current input
             String currentInput = doc.getUserInput().trim();
 
+            //Start browsing after the newest command - the history is only read from here, so it can load lazily
+            boolean startBrowsing = currentCommandnum < 0;
+            if (startBrowsing)
+                currentCommandnum = history.size();
+
             //If there's no previous commands, beep and return
             if (currentCommandnum <= 0) {
-                currentCommandnum = 0; //It should never be less than zero, but you never know...
+                currentCommandnum = startBrowsing ? -1 : 0;
                 Toolkit.getDefaultToolkit().beep();
                 return;
             }
@@ -312,19 +495,17 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
             }
             
             //If it's something the user just typed, save it for later, just in case.
-            if (currentCommandnum >= prompts.size()) {
-                currentCommandnum = prompts.size();
+            if (startBrowsing)
                 currentCommand = currentInput;      //save the current command, for down arrow use.
-            }
             
             //move on to actually processing the command, now that all extraneous cases are taken care of.
             
-            //based on previous checks, currentCommandnum should be in the range of 1 to prompts.size() before change.
-            //after change, it should be in the range of 0 to (prompts.size() - 1), valid for indexing prompts.
+            //based on previous checks, currentCommandnum should be in the range of 1 to history.size() before change.
+            //after change, it should be in the range of 0 to (history.size() - 1), valid for indexing history.
             currentCommandnum--; //update command number. (lower num = older command)
             
-            //Index prompts and write the replacement.
-            String replacementCommand = prompts.get(currentCommandnum);
+            //Index history and write the replacement.
+            String replacementCommand = history.get(currentCommandnum);
             doc.write(replacementCommand, defaultStyle, false);
             
             //Similar to tab, don't trigger processing because the user might not agree with the autocomplete
@@ -335,7 +516,8 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
             e.consume(); //pretty sure you can't go down, but if you can... don't.
             
             //If you've exhausted the list and replaced the line with the current command, beep and return
-            if (currentCommandnum >= prompts.size()) {
+            if (currentCommandnum < 0 || currentCommandnum >= history.size()) {
+                currentCommandnum = -1;
                 Toolkit.getDefaultToolkit().beep();
                 return;
             }
@@ -350,7 +532,8 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
             
             
             //If you've exhausted the list but not yet replaced the line with the current command...
-            if (currentCommandnum == prompts.size()) {
+            if (currentCommandnum == history.size()) {
+                currentCommandnum = -1;
                 doc.write(currentCommand, defaultStyle, false);
                 return;
             }
@@ -360,7 +543,7 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
                 currentCommandnum = 0;
             
             //finally, write in the new command.
-            doc.write(prompts.get(currentCommandnum), defaultStyle, false);
+            doc.write(history.get(currentCommandnum), defaultStyle, false);
         }
 
         // hacky fix for a bug where the foreground color of user's input changes to the prompt color
@@ -375,6 +558,128 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
         }
 	}
 
+    /** Starts a reverse search of the history, showing its status in place of the user's input. */
+    private void startSearch() {
+        cancelPendingCompletion();
+        searching = true;
+        searchOriginalInput = doc.getUserInput();
+        searchQuery.setLength(0);
+        searchMatch = -1;
+        currentCommandnum = -1;
+        replaceInput("(reverse-i-search)`': ");
+    }
+
+    /**
+     * Finds the newest entry of the history before an index that contains the search query, and shows it.
+     * If there's none, the previous match is kept and a beep is sounded.
+     *
+     * @param before the index in the history to search before
+     */
+    private void searchHistory(int before) {
+        int match = history.search(searchQuery.toString(), before);
+        if (match >= 0)
+            searchMatch = match;
+        else
+            Toolkit.getDefaultToolkit().beep();
+
+        replaceInput((match >= 0 || searchMatch < 0 ? "(reverse-i-search)`" : "(failed reverse-i-search)`") +
+                searchQuery + "': " + (searchMatch >= 0 ? history.get(searchMatch) : ""));
+    }
+
+    /**
+     * Handles a key pressed during a reverse search: BACKSPACE shortens the query, ESCAPE or Ctrl+G cancels the search,
+     * and any other key besides a modifier ends it with the match as the input, then is handled as usual - so ENTER
+     * runs the match.
+     *
+     * @param e the key event
+     * @return whether the key was handled by the search
+     */
+    private boolean handleSearchKey(KeyEvent e) {
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_SHIFT: case KeyEvent.VK_CONTROL: case KeyEvent.VK_ALT: case KeyEvent.VK_META:
+                return true;
+            case KeyEvent.VK_BACK_SPACE:
+                e.consume();
+                if (searchQuery.length() > 0) {
+                    searchQuery.setLength(searchQuery.length() - 1);
+                    searchMatch = -1;
+                    searchHistory(history.size());
+                }
+                return true;
+            case KeyEvent.VK_ESCAPE:
+                e.consume();
+                endSearch(searchOriginalInput);
+                return true;
+            case KeyEvent.VK_G:
+                if (e.isControlDown()) {
+                    e.consume();
+                    endSearch(searchOriginalInput);
+                    return true;
+                }
+                return true; // typed into the query by keyTyped
+            default:
+                if (e.getKeyChar() != KeyEvent.CHAR_UNDEFINED && e.getKeyChar() >= ' ' && !e.isControlDown())
+                    return true; // typed into the query by keyTyped
+                endSearch(searchMatch >= 0 ? history.get(searchMatch) : searchOriginalInput);
+                return false;
+        }
+    }
+
+    /** Ends the reverse search, replacing its status with the given input. */
+    private void endSearch(String input) {
+        searching = false;
+        replaceInput(input);
+    }
+
+    /** Replaces the text after the prompt. */
+    private void replaceInput(String text) {
+        this.remove(doc.getLimit(), doc.getLength() - doc.getLimit());
+        doc.write(text, defaultStyle, false);
+    }
+
+    /**
+     * Writes the completions of the user's input to the console.
+     *
+     * @param input the input that was completed
+     * @param completions the completions of the input
+     * @param common the longest prefix shared by all completions
+     */
+    private void applyCompletions(String input, List<String> completions, String common) {
+        if(completions == null || completions.isEmpty()) {
+            //no completions
+            Toolkit.getDefaultToolkit().beep();
+        }
+        else if(completions.size() == 1) { //only one match - print it
+            String toInsert = completions.get(0);
+            toInsert = toInsert.substring(input.length());
+            doc.write(toInsert, defaultStyle, false);
+            //don't trigger processing because the user might not agree with the autocomplete
+        }
+        else if(common.length() > input.length()) {
+            //all matches share a longer prefix - extend the input up to where they differ
+            doc.write(common.substring(input.length()), defaultStyle, false);
+        }
+        else {
+            StringBuilder help = new StringBuilder();
+            help.append('\n');
+            for(String str : completions) {
+                help.append(' ');
+                help.append(str);
+            }
+            help.append("\n" + prompt);
+            doc.write(help.toString(), defaultStyle, true);
+            doc.write(input, defaultStyle, false);
+        }
+    }
+
+    /** Cancels the completion that's still running for a TAB press, if any. */
+    private void cancelPendingCompletion() {
+        CompletableFuture<List<String>> completion = pendingCompletion;
+        pendingCompletion = null;
+        if(completion != null)
+            completion.cancel(true);
+    }
+
 	public void keyReleased(KeyEvent e) {
         if(e.getKeyCode() == KeyEvent.VK_ENTER) {
             DOCUMENT_HARDCOPY.set(DOCUMENT_HARDCOPY.size()-1,prompt + doc.getUserInput());
@@ -383,15 +688,46 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
             DOCUMENT_HARDCOPY.add("");
             String line = doc.getUserInput().trim();
             String[] args = parseLine(line);
-            prompts.add(line);
-            currentCommandnum = prompts.size();
-
-            for(InputProcessor processor : processors)
-                processor.process(this, line, args);
+            try {
+                history.add(line);
+            } catch(UncheckedIOException ex) {
+                ex.printStackTrace();
+            }
+            currentCommandnum = -1;
 
-            doc.write(prompt, defaultStyle, true);
+            if(processorExecutor == null) {
+                process(processors, line, args);
+                doc.write(prompt, defaultStyle, true);
+            }
+            else {
+                // chained after the previous line, so lines are processed in order and each gets its prompt after.
+                // Each stage runs however the one before it completed, so a failure can't skip the next line.
+                doc.lockInput();
+                InputProcessor[] processors = this.processors;
+                processing = processing
+                        .handleAsync((previous, previousError) -> {
+                            process(processors, line, args);
+                            return null;
+                        }, processorExecutor)
+                        .handleAsync((processed, error) -> {
+                            if(error != null)
+                                error.printStackTrace();
+                            try {
+                                doc.write(prompt, defaultStyle, true);
+                            } catch(RuntimeException ex) {
+                                ex.printStackTrace();
+                            }
+                            return null;
+                        }, SwingUtilities::invokeLater);
+            }
         }
 	}
+
+    /** Runs each processor on a line the user entered. */
+    private void process(InputProcessor[] processors, String line, String[] args) {
+        for(InputProcessor processor : processors)
+            processor.process(this, line, args);
+    }
 	
     public void mouseWheelMoved(MouseWheelEvent e) {
         this.scroll(e.getWheelRotation() * 3);
@@ -440,7 +776,12 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
         }
     }
 
-    private static String[] parseLine(String line) {
+    /**
+     * Splits a line of input into arguments at spaces, keeping text in double quotes together.
+     * @param line The line to split.
+     * @return The arguments.
+     */
+    public static String[] parseLine(String line) {
         List<String> args = new ArrayList<String>();
         StringBuilder current = new StringBuilder();
         char[] chars = line.toCharArray();
@@ -477,6 +818,11 @@ public class Console extends JScrollPane implements KeyListener, MouseWheelListe
 		{
 			return null;
 		}
+
+		public CompletableFuture<List<String>> completeAsync(String input)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
 	}
 
 }
@@ -22,6 +22,8 @@ import javax.swing.event.CaretListener;
 
 import javax.swing.text.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ConsoleDocument extends DefaultStyledDocument implements CaretListener {
 
@@ -33,6 +35,24 @@ public class ConsoleDocument extends DefaultStyledDocument implements CaretListe
 	private ColorPane textPane;
 
 	private int limit;
+
+	/** The maximum number of lines kept in the document, or 0 for no limit. */
+	private int maxLines;
+
+	/** The maximum number of characters kept in the document, or 0 for no limit. */
+	private int maxChars;
+
+	/** When the scrollback limit is exceeded, this fraction of the limit is evicted at once so trimming stays rare. */
+	private static final double EVICTION_FRACTION = 0.1;
+
+	/** Reused by appendRuns() to build the element specs of a batch */
+	private final ArrayList<ElementSpec> specs = new ArrayList<>();
+
+	/** Reused by write(List) to collect the runs of a message */
+	private final StyledRunBuffer runBuffer = new StyledRunBuffer();
+
+	/** Shares one attribute set between all the runs with the same style */
+	private final AttributeCache attributeCache = new AttributeCache((StyleContext) getAttributeContext());
 	
 	public void setConsole(Console console) {
         this.console = console;
@@ -55,6 +75,8 @@ public class ConsoleDocument extends DefaultStyledDocument implements CaretListe
 				insertString(getLength(), text, attrs);
 			}
 
+			trimScrollback();
+
 			if(updateLimit) {
 				limit = getLength();
 				caret.setDot(limit);
@@ -78,7 +100,7 @@ public class ConsoleDocument extends DefaultStyledDocument implements CaretListe
 				insertString(getLength(), nonAnsiText, attrs);
 
 				if(console.enableANSI) {
-					textPane.appendANSI(text, attrs);
+					textPane.appendANSI(text.substring(nonAnsiText.length()), attrs);
 				}
 				else {
 					insertString(getLength(), text.substring(nonAnsiText.length()), attrs);
@@ -90,6 +112,8 @@ public class ConsoleDocument extends DefaultStyledDocument implements CaretListe
 				textPane.setCaretColor(color);
 			}
 
+			trimScrollback();
+
 			if(updateLimit) {
 				limit = getLength();
 				caret.setDot(limit);
@@ -109,6 +133,110 @@ public class ConsoleDocument extends DefaultStyledDocument implements CaretListe
 		}
 	}
 	
+	/**
+	 * Writes a whole message in one batch - each run is inserted in its own color, ANSI is not processed.
+	 * @param runs The runs to write, in order. A run without a color keeps the color of the run before it.
+	 * @param attrs The attributes to write the text with, apart from the foreground - not modified.
+	 * @param updateLimit Whether the written text should become part of the console's output (uneditable by the user).
+	 * @return The color of the last run, or the console's foreground color if no run had a color.
+	 */
+	public Color write(List<StyledRun> runs, MutableAttributeSet attrs, boolean updateLimit) {
+		Color color = console.getForeground();
+		attributeCache.setBase(attrs);
+		try {
+			for(StyledRun run : runs) {
+				if(run.getColor() != null)
+					color = run.getColor();
+				if(run.getText().isEmpty())
+					continue;
+
+				runBuffer.add(run.getText(), attributeCache.get(color, null, 0));
+			}
+			runBuffer.appendTo(this);
+
+			trimScrollback();
+
+			if(updateLimit) {
+				limit = getLength();
+				caret.setDot(limit);
+			}
+			else {
+				caret.setDot(getLength());
+			}
+		}
+		catch(BadLocationException e) {
+			e.printStackTrace();
+		}
+		return color;
+	}
+
+	/**
+	 * Appends runs of styled text to the end of the document in one batch - under a single write lock with a single
+	 * DocumentEvent, so the text pane lays out once per batch instead of once per run. Doesn't move the caret or
+	 * the input limit.
+	 * @param buffer The text of every run.
+	 * @param offsets The offset of each run in the buffer.
+	 * @param lengths The length of each run.
+	 * @param attrs The attributes of each run.
+	 * @param count The number of runs.
+	 */
+	public void appendRuns(char[] buffer, int[] offsets, int[] lengths, AttributeSet[] attrs, int count)
+			throws BadLocationException {
+		if(count == 0)
+			return;
+
+		// the same element specs that insertString() builds in insertUpdate() for text appended before the final
+		// newline, so the resulting paragraphs are identical
+		int offset = getLength();
+		Element paragraph = getParagraphElement(offset);
+		AttributeSet paragraphAttrs = paragraph.getAttributes();
+		ElementSpec lastStart = null;
+		boolean joinPrevious = false;
+		boolean afterNewline = offset > 0 && getText(offset - 1, 1).charAt(0) == '\n';
+		specs.clear();
+
+		if(afterNewline) {
+			specs.add(new ElementSpec(paragraphAttrs, ElementSpec.EndTagType));
+			lastStart = new ElementSpec(paragraphAttrs, ElementSpec.StartTagType);
+			specs.add(lastStart);
+		}
+		else {
+			Element run = paragraph.getElement(paragraph.getElementIndex(offset));
+			if(run.getAttributes().isEqual(attrs[0]))
+				joinPrevious = true;
+		}
+
+		for(int i = 0; i < count; i++) {
+			int start = offsets[i];
+			int end = start + lengths[i];
+			for(int j = start; j < end; j++) {
+				if(buffer[j] == '\n') { // the newline ends the paragraph, the rest of the run starts a new one
+					specs.add(new ElementSpec(attrs[i], ElementSpec.ContentType, buffer, start, j + 1 - start));
+					specs.add(new ElementSpec(null, ElementSpec.EndTagType));
+					lastStart = new ElementSpec(paragraphAttrs, ElementSpec.StartTagType);
+					specs.add(lastStart);
+					start = j + 1;
+				}
+			}
+			if(end > start)
+				specs.add(new ElementSpec(attrs[i], ElementSpec.ContentType, buffer, start, end - start));
+		}
+
+		if(joinPrevious)
+			specs.get(0).setDirection(ElementSpec.JoinPreviousDirection);
+		// the last new paragraph takes in the final newline - as the empty paragraph after it when appending after
+		// a newline, otherwise as the fractured remainder of the old last paragraph
+		if(lastStart != null)
+			lastStart.setDirection(afterNewline ? ElementSpec.JoinNextDirection : ElementSpec.JoinFractureDirection);
+
+		insert(offset, specs.toArray(new ElementSpec[0]));
+		specs.clear();
+	}
+
+	AttributeCache getAttributeCache() {
+		return attributeCache;
+	}
+
 	public String getUserInput() {
 		try {
 			return getText(limit, getLength() - limit);
@@ -119,6 +247,51 @@ public class ConsoleDocument extends DefaultStyledDocument implements CaretListe
 		}
 	}
 	
+	/**
+	 * Limits how much output the document keeps. Once a limit is exceeded, the oldest lines are removed in bulk;
+	 * the line with the user's input is never removed.
+	 * @param maxLines The maximum number of lines to keep, or 0 for no limit.
+	 * @param maxChars The maximum number of characters to keep, or 0 for no limit.
+	 */
+	public void setScrollbackLimit(int maxLines, int maxChars) {
+		this.maxLines = Math.max(0, maxLines);
+		this.maxChars = Math.max(0, maxChars);
+		trimScrollback();
+	}
+
+	/**
+	 * Removes the oldest lines if the document is over its scrollback limit, shifting the input limit with them.
+	 * Evicts down to (1 - EVICTION_FRACTION) of the limit, so the cost of shifting the element tree is only paid
+	 * once per batch of lines rather than once per line.
+	 */
+	private void trimScrollback() {
+		Element root = getDefaultRootElement();
+		int removeEnd = 0;
+
+		if(maxLines > 0 && root.getElementCount() > maxLines) {
+			int keep = Math.max(1, (int) (maxLines * (1 - EVICTION_FRACTION)));
+			removeEnd = root.getElement(root.getElementCount() - keep - 1).getEndOffset();
+		}
+		if(maxChars > 0 && getLength() > maxChars) {
+			int excess = getLength() - (int) (maxChars * (1 - EVICTION_FRACTION));
+			Element line = root.getElement(root.getElementIndex(excess));
+			removeEnd = Math.max(removeEnd, line.getStartOffset() == excess ? excess : line.getEndOffset());
+		}
+
+		// never remove the line the user is typing on
+		removeEnd = Math.min(removeEnd, root.getElement(root.getElementIndex(limit)).getStartOffset());
+		if(removeEnd <= 0)
+			return;
+
+		try {
+			super.remove(0, removeEnd);
+			limit -= removeEnd;
+		}
+		catch(BadLocationException e) {
+			e.printStackTrace();
+		}
+	}
+
 	@Override
 	public void remove(int offs, int len) throws BadLocationException {
 		if(offs < limit) {
@@ -132,6 +305,12 @@ public class ConsoleDocument extends DefaultStyledDocument implements CaretListe
 		this.caret = caret;
 	}
 	
+	/** Moves the input limit to the end, so the user's entered line can't be edited while it's being processed. */
+	void lockInput() {
+		limit = getLength();
+		caret.setDot(limit);
+	}
+
 	public int getLimit() {
         return limit;
     }
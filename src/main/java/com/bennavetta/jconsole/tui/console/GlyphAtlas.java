@@ -0,0 +1,150 @@
+package com.bennavetta.jconsole.tui.console;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The pixels of the glyphs of one font in one color, each rendered into one character cell - so a CellRowView builds
+ * a row by copying pixels, instead of laying out and rasterizing text.<br>
+ * The printable ASCII characters are rendered side by side up front; any other character is rendered the first time
+ * it's used. Atlases are rendered at the scale of the Graphics they're painted to, so they stay sharp on high DPI
+ * screens, and are only used on the EDT. Glyphs are clipped to their cell, as in a terminal.
+ *
+ * @author woodrow73
+ */
+final class GlyphAtlas {
+
+    /** The number of (font, color, scale) atlases kept */
+    private static final int CACHED_ATLASES = 64;
+
+    private static final char FIRST_ASCII = ' ', LAST_ASCII = '~';
+    private static final int ASCII_COUNT = LAST_ASCII - FIRST_ASCII + 1;
+
+    private static final Map<Key, GlyphAtlas> atlases = new LinkedHashMap<Key, GlyphAtlas>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, GlyphAtlas> eldest) {
+            return size() > CACHED_ATLASES;
+        }
+    };
+
+    private static final class Key {
+        final Font font;
+        final int rgb;
+        final double scale;
+
+        Key(Font font, int rgb, double scale) {
+            this.font = font;
+            this.rgb = rgb;
+            this.scale = scale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return rgb == key.rgb && scale == key.scale && font.equals(key.font);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(font, rgb, scale);
+        }
+    }
+
+    private final Font font;
+    private final Color color;
+    private final double scale;
+    private final int ascent;
+
+    /** The size of a cell in pixels */
+    private final int cellWidth, cellHeight;
+
+    /** The ARGB pixels of the printable ASCII glyphs, side by side */
+    private final int[] ascii;
+
+    /** The ARGB pixels of the glyphs of other characters, by code point */
+    private final Map<Integer, int[]> others = new HashMap<>();
+
+    /**
+     * @param font The font of the glyphs.
+     * @param rgb The color of the glyphs.
+     * @param scale The scale of the Graphics the glyphs are painted to.
+     * @param metrics The metrics of the font, for the size of a cell.
+     * @return The atlas of the font in the color.
+     */
+    static GlyphAtlas get(Font font, int rgb, double scale, FontMetrics metrics) {
+        return atlases.computeIfAbsent(new Key(font, rgb, scale), key -> new GlyphAtlas(font, rgb, scale, metrics));
+    }
+
+    /** @return The number of pixels a size in user space covers at a scale. */
+    static int toPixels(int size, double scale) {
+        return Math.max(1, (int) Math.ceil(size * scale));
+    }
+
+    private GlyphAtlas(Font font, int rgb, double scale, FontMetrics metrics) {
+        this.font = font;
+        this.color = new Color(rgb, true);
+        this.scale = scale;
+        this.ascent = metrics.getAscent();
+        this.cellWidth = toPixels(metrics.charWidth('m'), scale);
+        this.cellHeight = toPixels(metrics.getHeight(), scale);
+
+        StringBuilder chars = new StringBuilder(ASCII_COUNT);
+        for(char c = FIRST_ASCII; c <= LAST_ASCII; c++)
+            chars.append(c);
+        ascii = render(chars.toString());
+    }
+
+    /**
+     * Copies the pixels of a glyph into a cell of an ARGB image.
+     * @param codePoint The character.
+     * @param dest The pixels of the image.
+     * @param offset The index of the top left pixel of the cell.
+     * @param scan The width of the image.
+     * @param destLength The number of pixels of the image - dest may be longer.
+     */
+    void copyGlyph(int codePoint, int[] dest, int offset, int scan, int destLength) {
+        int[] src;
+        int srcOffset, srcScan;
+        if(codePoint >= FIRST_ASCII && codePoint <= LAST_ASCII) {
+            src = ascii;
+            srcOffset = (codePoint - FIRST_ASCII) * cellWidth;
+            srcScan = ASCII_COUNT * cellWidth;
+        }
+        else {
+            src = others.computeIfAbsent(codePoint, c -> render(new String(Character.toChars(c))));
+            srcOffset = 0;
+            srcScan = cellWidth;
+        }
+
+        int rows = Math.min(cellHeight, (destLength - offset + scan - 1) / scan);
+        for(int y = 0; y < rows; y++)
+            System.arraycopy(src, srcOffset + y * srcScan, dest, offset + y * scan, cellWidth);
+    }
+
+    /** @return The pixels of the characters of a string, each in its own cell. */
+    private int[] render(String chars) {
+        int count = chars.codePointCount(0, chars.length());
+        BufferedImage image = new BufferedImage(count * cellWidth, cellHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        // subpixel antialiasing needs an opaque background, so the glyphs are antialiased in grayscale
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(color);
+        for(int i = 0, cell = 0; i < chars.length(); i += Character.charCount(chars.codePointAt(i)), cell++) {
+            Graphics2D cellGraphics = (Graphics2D) g.create(cell * cellWidth, 0, cellWidth, cellHeight);
+            cellGraphics.scale(scale, scale);
+            cellGraphics.setFont(font);
+            cellGraphics.drawString(new String(Character.toChars(chars.codePointAt(i))), 0, ascent);
+            cellGraphics.dispose();
+        }
+        g.dispose();
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.bennavetta.jconsole.tui.console;
+
+/**
+ * How a Console lays out and paints the lines of its document.
+ *
+ * @author woodrow73
+ */
+public enum LineLayout {
+    /** Swing's text views: every line is laid out, and long lines wrap */
+    WRAPPED,
+    /** Only the lines in view are laid out and painted, in rows of a fixed height without wrapping */
+    VIRTUAL,
+    /** Like VIRTUAL, with each row painted as a grid of character cells from cached glyph images - for monospaced
+     *  fonts */
+    CELL_GRID
+}
@@ -0,0 +1,132 @@
+package com.bennavetta.jconsole.tui.console;
+
+import lombok.Getter;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Throttles the repaints of a ColorPane to one per frame interval.<br><br>
+ * Every print changes the document, moves the caret and requests a repaint, so a tight print loop would otherwise
+ * repaint and scroll many times per frame. While throttling, the regions the pane asks to repaint on the EDT are
+ * merged into one dirty rectangle, and the caret's requests to scroll into view into one flag; a Timer repaints the
+ * rectangle and scrolls to the caret at most once per interval. Requests from other threads aren't throttled.
+ *
+ * @author woodrow73
+ */
+public final class RepaintScheduler {
+
+    /** The refresh rate assumed when the display's is unknown, or there's no display */
+    private static final int FALLBACK_REFRESH_RATE = 60;
+
+    private final ColorPane pane;
+
+    private final Timer timer;
+
+    /** The minimum time between repaints in milliseconds, or 0 to repaint on every request */
+    @Getter
+    private int frameInterval;
+
+    /**
+     * The bounds of the union of the regions to repaint - empty while dirtyX1 is Integer.MAX_VALUE. Kept as ints, so
+     * merging a request doesn't allocate; one Rectangle is made per repaint.
+     */
+    private int dirtyX1 = Integer.MAX_VALUE, dirtyY1 = Integer.MAX_VALUE, dirtyX2 = Integer.MIN_VALUE,
+            dirtyY2 = Integer.MIN_VALUE;
+
+    /** Whether the caret asked to be scrolled into view */
+    private boolean scrollToCaret;
+
+    /** Whether the dirty region is being repainted - requests made meanwhile aren't deferred */
+    private boolean flushing;
+
+    private long lastFlushNanos;
+
+    RepaintScheduler(ColorPane pane, int frameInterval) {
+        this.pane = pane;
+        this.timer = new Timer(0, e -> flush());
+        timer.setRepeats(false);
+        setFrameInterval(frameInterval);
+    }
+
+    /** @return The time between refreshes of the default screen in milliseconds - 16 for a 60 Hz display. */
+    public static int getDisplayFrameInterval() {
+        int refreshRate = DisplayMode.REFRESH_RATE_UNKNOWN;
+        if(!GraphicsEnvironment.isHeadless())
+            refreshRate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode()
+                    .getRefreshRate();
+        return 1000 / (refreshRate > 0 ? refreshRate : FALLBACK_REFRESH_RATE);
+    }
+
+    /** @param frameInterval The minimum time between repaints in milliseconds, or 0 to repaint on every request. */
+    void setFrameInterval(int frameInterval) {
+        this.frameInterval = Math.max(0, frameInterval);
+        if(this.frameInterval == 0 && timer.isRunning()) {
+            timer.stop();
+            flush();
+        }
+    }
+
+    /** @return Whether the repaint of the region was deferred to the next frame - if not, the pane repaints now. */
+    boolean deferRepaint(int x, int y, int width, int height) {
+        if(!isThrottling())
+            return false;
+
+        if(width > 0 && height > 0) {
+            dirtyX1 = Math.min(dirtyX1, x);
+            dirtyY1 = Math.min(dirtyY1, y);
+            dirtyX2 = (int) Math.max(dirtyX2, Math.min(Integer.MAX_VALUE, (long) x + width));
+            dirtyY2 = (int) Math.max(dirtyY2, Math.min(Integer.MAX_VALUE, (long) y + height));
+        }
+        schedule();
+        return true;
+    }
+
+    /** @return Whether scrolling to the caret was deferred to the next frame - if not, the caret scrolls now. */
+    boolean deferScrollToCaret() {
+        if(!isThrottling())
+            return false;
+
+        scrollToCaret = true;
+        schedule();
+        return true;
+    }
+
+    private boolean isThrottling() {
+        return frameInterval > 0 && !flushing && SwingUtilities.isEventDispatchThread();
+    }
+
+    /** Starts the timer for the end of the current frame, unless it's already running. */
+    private void schedule() {
+        if(timer.isRunning())
+            return;
+
+        long elapsed = (System.nanoTime() - lastFlushNanos) / 1_000_000;
+        timer.setInitialDelay((int) Math.max(0, Math.min(frameInterval, frameInterval - elapsed)));
+        timer.start();
+    }
+
+    /** Scrolls to the caret and repaints the dirty region. */
+    private void flush() {
+        lastFlushNanos = System.nanoTime();
+        flushing = true;
+        try {
+            if(scrollToCaret) {
+                scrollToCaret = false;
+                pane.scrollToCaret();
+            }
+            if(dirtyX1 != Integer.MAX_VALUE) {
+                Rectangle region = new Rectangle(dirtyX1, dirtyY1,
+                        (int) Math.min(Integer.MAX_VALUE, (long) dirtyX2 - dirtyX1),
+                        (int) Math.min(Integer.MAX_VALUE, (long) dirtyY2 - dirtyY1));
+                dirtyX1 = dirtyY1 = Integer.MAX_VALUE;
+                dirtyX2 = dirtyY2 = Integer.MIN_VALUE;
+                pane.repaint(region);
+            }
+        }
+        finally {
+            flushing = false;
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+package com.bennavetta.jconsole.tui.console;
+
+import com.bennavetta.jconsole.util.ColorUtil;
+
+import javax.swing.text.AttributeSet;
+import java.awt.*;
+
+/**
+ * A one-pass state machine for ANSI escape sequences that keeps the SGR (Select Graphic Rendition) style between
+ * calls, so sequences split across several writes are still applied.<br><br>
+ * Supports the 8/16 basic colors (30-37, 90-97, 40-47, 100-107), 256 colors (38;5;n / 48;5;n), truecolor
+ * (38;2;r;g;b / 48;2;r;g;b), default colors (39, 49), bold, italic, underline, reverse video and strikethrough.
+ * Other CSI sequences and OSC strings are consumed and ignored. Parameters are parsed into a reused int array,
+ * so no Strings are built per sequence.<br>
+ * Package-private
+ */
+class SgrParser {
+
+    /** Receives runs of plain text, in order, with the style that was current when they were parsed */
+    interface TextHandler {
+        /**
+         * @param parser The parser, whose style applies to the run.
+         * @param text The parsed string.
+         * @param start The index of the run's first char (inclusive).
+         * @param end The index after the run's last char (exclusive).
+         */
+        void text(SgrParser parser, String text, int start, int end);
+    }
+
+    private static final char ESC = '\u001B', BEL = '\u0007';
+
+    private static final int TEXT = 0, ESCAPE = 1, CSI = 2, OSC = 3, OSC_ESCAPE = 4;
+
+    private static final int MAX_PARAMS = 16;
+
+    private static final Color[] DARK_COLORS = { ColorUtil.D_Black, ColorUtil.D_Red, ColorUtil.D_Green,
+            ColorUtil.D_Yellow, ColorUtil.D_Blue, ColorUtil.D_Magenta, ColorUtil.D_Cyan, ColorUtil.D_White };
+
+    private static final Color[] BRIGHT_COLORS = { ColorUtil.B_Black, ColorUtil.B_Red, ColorUtil.B_Green,
+            ColorUtil.B_Yellow, ColorUtil.B_Blue, ColorUtil.B_Magenta, ColorUtil.B_Cyan, ColorUtil.B_White };
+
+    /** The color that SGR 0 resets the foreground to, matching ColorUtil.ansiColorMap */
+    private static final Color RESET_COLOR = ColorUtil.ansiToColor(ColorUtil.resetANSI);
+
+    private int state = TEXT;
+
+    private final int[] params = new int[MAX_PARAMS];
+    private int paramCount;
+    private boolean privateSequence;
+
+    /** The color used by SGR 39, the console's foreground */
+    private Color defaultForeground;
+
+    private Color foreground;
+
+    /** The background color, or null for none */
+    private Color background;
+
+    /** Index 0-7 of the basic foreground color, so bold can brighten it; -1 for any other color */
+    private int basicForeground = -1;
+
+    private boolean bold, italic, underline, strikethrough, reverse;
+
+    /** @param defaultForeground The color used by SGR 39 and as the initial foreground. */
+    public SgrParser(Color defaultForeground) {
+        this.defaultForeground = defaultForeground;
+        this.foreground = defaultForeground;
+    }
+
+    /**
+     * Parses text, passing every run between escape sequences to the handler. An escape sequence that's cut off at
+     * the end of the text is completed by the next call.
+     * @param text The text to parse.
+     * @param handler Receives the runs of plain text.
+     */
+    public void parse(String text, TextHandler handler) {
+        int runStart = 0;
+        int length = text.length();
+
+        for(int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            switch(state) {
+                case TEXT:
+                    if(c == ESC) {
+                        if(i > runStart)
+                            handler.text(this, text, runStart, i);
+                        state = ESCAPE;
+                    }
+                    break;
+                case ESCAPE:
+                    if(c == '[') {
+                        state = CSI;
+                        paramCount = 0;
+                        params[0] = 0;
+                        privateSequence = false;
+                    }
+                    else if(c == ']') {
+                        state = OSC;
+                    }
+                    else { // two char escape sequence - ignored
+                        state = TEXT;
+                        runStart = i + 1;
+                    }
+                    break;
+                case CSI:
+                    if(c >= '0' && c <= '9') {
+                        if(paramCount == 0)
+                            paramCount = 1;
+                        if(paramCount <= MAX_PARAMS)
+                            params[paramCount - 1] = Math.min(params[paramCount - 1] * 10 + (c - '0'), 0xFFFF);
+                    }
+                    else if(c == ';' || c == ':') {
+                        if(paramCount == 0)
+                            paramCount = 1;
+                        if(paramCount < MAX_PARAMS)
+                            params[paramCount] = 0;
+                        paramCount++;
+                    }
+                    else if(c >= 0x40 && c <= 0x7E) { // final byte
+                        if(c == 'm' && !privateSequence)
+                            applySgr();
+                        state = TEXT;
+                        runStart = i + 1;
+                    }
+                    else { // private or intermediate bytes - the sequence isn't SGR
+                        privateSequence = true;
+                    }
+                    break;
+                case OSC:
+                    if(c == BEL) {
+                        state = TEXT;
+                        runStart = i + 1;
+                    }
+                    else if(c == ESC) {
+                        state = OSC_ESCAPE;
+                    }
+                    break;
+                case OSC_ESCAPE: // ESC \ ends the OSC string
+                    state = c == '\\' ? TEXT : OSC;
+                    runStart = i + 1;
+                    break;
+            }
+        }
+
+        if(state == TEXT && length > runStart)
+            handler.text(this, text, runStart, length);
+    }
+
+    /** Applies the SGR parameters of the sequence that was just parsed. An empty sequence is a reset. */
+    private void applySgr() {
+        int count = Math.min(paramCount, MAX_PARAMS);
+        if(count == 0) {
+            reset(RESET_COLOR);
+            return;
+        }
+
+        for(int i = 0; i < count; i++) {
+            int p = params[i];
+            if(p == 0) reset(RESET_COLOR);
+            else if(p == 1) { bold = true; brighten(); }
+            else if(p == 3) italic = true;
+            else if(p == 4) underline = true;
+            else if(p == 7) reverse = true;
+            else if(p == 9) strikethrough = true;
+            else if(p == 22) { bold = false; darken(); }
+            else if(p == 23) italic = false;
+            else if(p == 24) underline = false;
+            else if(p == 27) reverse = false;
+            else if(p == 29) strikethrough = false;
+            else if(p >= 30 && p <= 37) {
+                basicForeground = p - 30;
+                foreground = bold ? BRIGHT_COLORS[basicForeground] : DARK_COLORS[basicForeground];
+            }
+            else if(p == 38 || p == 48) {
+                int consumed = extendedColor(i + 1, count, p == 38);
+                i += consumed;
+            }
+            else if(p == 39) {
+                foreground = defaultForeground;
+                basicForeground = -1;
+            }
+            else if(p >= 40 && p <= 47) background = DARK_COLORS[p - 40];
+            else if(p == 49) background = null;
+            else if(p >= 90 && p <= 97) {
+                foreground = BRIGHT_COLORS[p - 90];
+                basicForeground = -1;
+            }
+            else if(p >= 100 && p <= 107) background = BRIGHT_COLORS[p - 100];
+            // anything else is unsupported and ignored
+        }
+    }
+
+    /**
+     * Applies a 256-color (5;n) or truecolor (2;r;g;b) parameter list following a 38 or 48.
+     * @return The number of parameters consumed after the 38 or 48.
+     */
+    private int extendedColor(int index, int count, boolean isForeground) {
+        if(index >= count)
+            return 0;
+
+        Color color;
+        int consumed;
+        if(params[index] == 5 && index + 1 < count) {
+            color = ColorUtil.xterm256ToColor(params[index + 1] & 0xFF);
+            consumed = 2;
+        }
+        else if(params[index] == 2 && index + 3 < count) {
+            color = new Color(Math.min(params[index + 1], 255), Math.min(params[index + 2], 255),
+                    Math.min(params[index + 3], 255));
+            consumed = 4;
+        }
+        else {
+            return count - index; // malformed - skip the rest of the sequence
+        }
+
+        if(isForeground) {
+            foreground = color;
+            basicForeground = -1;
+        }
+        else {
+            background = color;
+        }
+        return consumed;
+    }
+
+    private void brighten() {
+        if(basicForeground != -1)
+            foreground = BRIGHT_COLORS[basicForeground];
+    }
+
+    private void darken() {
+        if(basicForeground != -1)
+            foreground = DARK_COLORS[basicForeground];
+    }
+
+    /**
+     * Resets all attributes.
+     * @param foreground The foreground color after the reset.
+     */
+    public void reset(Color foreground) {
+        this.foreground = foreground;
+        background = null;
+        basicForeground = -1;
+        bold = italic = underline = strikethrough = reverse = false;
+    }
+
+    /**
+     * @param cache The cache to take the attribute set from.
+     * @param defaultBackground The background behind text without a background color, used for reverse video.
+     * @return The shared attribute set of the current style. Attributes that are off are left as they are in the
+     * cache's base set, so the console's font settings (e.g. a bold font) still apply.
+     */
+    public AttributeSet attributes(AttributeCache cache, Color defaultBackground) {
+        Color fg = reverse ? (background != null ? background : defaultBackground) : foreground;
+        Color bg = reverse ? foreground : background;
+
+        int flags = (bold ? AttributeCache.BOLD : 0) | (italic ? AttributeCache.ITALIC : 0) |
+                (underline ? AttributeCache.UNDERLINE : 0) | (strikethrough ? AttributeCache.STRIKETHROUGH : 0);
+        return cache.get(fg, bg, flags);
+    }
+
+    /** @return The current foreground color. */
+    public Color getForeground() {
+        return foreground;
+    }
+
+    /** Sets the current foreground color, e.g. when a color is given to a print method. */
+    public void setForeground(Color foreground) {
+        this.foreground = foreground;
+        this.basicForeground = -1;
+    }
+
+    /** Sets the color used by SGR 39. */
+    public void setDefaultForeground(Color defaultForeground) {
+        this.defaultForeground = defaultForeground;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.bennavetta.jconsole.tui.console;
+
+import lombok.Getter;
+
+import java.awt.*;
+
+/**
+ * A run of text printed in a single color; a list of runs describes one whole message so it can be written to the
+ * ConsoleDocument in one go.
+ */
+public class StyledRun {
+
+    /** The color of the text, or null to keep the console's current foreground color. */
+    @Getter
+    private final Color color;
+
+    /** The text to print - may be empty, in which case the run only changes the console's foreground color. */
+    @Getter
+    private final String text;
+
+    /**
+     * @param color The color of the text, or null to keep the console's current foreground color.
+     * @param text The text to print - may be empty to only change the console's foreground color.
+     */
+    public StyledRun(Color color, String text) {
+        this.color = color;
+        this.text = text;
+    }
+
+}
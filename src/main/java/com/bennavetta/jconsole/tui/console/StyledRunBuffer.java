@@ -0,0 +1,97 @@
+package com.bennavetta.jconsole.tui.console;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+import java.util.Arrays;
+
+/**
+ * Collects runs of styled text into one char buffer so they can be appended to a ConsoleDocument in a single
+ * batch (see ConsoleDocument.appendRuns()). The buffer is reused after clear(), so a steady stream of messages
+ * doesn't allocate. A run with the same attributes as the run before it is merged into that run, so the document
+ * gets one leaf element for both.<br>
+ * Package-private
+ */
+class StyledRunBuffer {
+
+    private char[] chars = new char[256];
+    private int length;
+
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private AttributeSet[] attrs = new AttributeSet[16];
+    private int count;
+
+    /**
+     * Adds a run of text. Empty runs are ignored, and a run with the same attributes as the last one extends it.
+     * @param text The text containing the run.
+     * @param start The index of the run's first char (inclusive).
+     * @param end The index after the run's last char (exclusive).
+     * @param attributes The attributes of the run - must not be modified afterwards.
+     */
+    public void add(String text, int start, int end, AttributeSet attributes) {
+        int runLength = end - start;
+        if(runLength <= 0)
+            return;
+
+        if(length + runLength > chars.length)
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + runLength));
+        text.getChars(start, end, chars, length);
+        length += runLength;
+
+        AttributeSet last = count == 0 ? null : attrs[count - 1];
+        if(last != null && (last == attributes || last.isEqual(attributes))) {
+            lengths[count - 1] += runLength;
+            return;
+        }
+
+        if(count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+            attrs = Arrays.copyOf(attrs, count * 2);
+        }
+
+        offsets[count] = length - runLength;
+        lengths[count] = runLength;
+        attrs[count] = attributes;
+        count++;
+    }
+
+    public void add(String text, AttributeSet attributes) {
+        add(text, 0, text.length(), attributes);
+    }
+
+    /**
+     * Appends the collected runs to the end of a document and clears the buffer. A ConsoleDocument receives them in
+     * one batch; any other document receives one insertString() per run.
+     */
+    public void appendTo(Document doc) throws BadLocationException {
+        try {
+            if(count == 0)
+                return;
+
+            if(doc instanceof ConsoleDocument) {
+                ((ConsoleDocument) doc).appendRuns(chars, offsets, lengths, attrs, count);
+            }
+            else {
+                for(int i = 0; i < count; i++)
+                    doc.insertString(doc.getLength(), new String(chars, offsets[i], lengths[i]), attrs[i]);
+            }
+        }
+        finally {
+            clear();
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(attrs, 0, count, null);
+        length = 0;
+        count = 0;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+}
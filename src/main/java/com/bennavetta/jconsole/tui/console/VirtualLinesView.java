@@ -0,0 +1,216 @@
+package com.bennavetta.jconsole.tui.console;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.*;
+import java.awt.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lays out the lines of a document in a single column of fixed height rows, without wrapping - the view of a
+ * Console with virtual scrolling.<br><br>
+ * The paragraph elements of the document are its index of lines: the line at a position is found by binary search,
+ * and the line at a y coordinate by division. Views are only created for the lines that are painted or hit tested,
+ * and kept in a small LRU cache - so layout, painting and document changes cost the same with 100 lines or 1M.
+ * <br><br>
+ * The height of every line is the height of the console's current font; the preferred width is the longest line,
+ * in characters, times the width of an 'm' in that font. Lines are measured as they change, and all of them are
+ * measured again only when the longest one is removed or shortened.
+ *
+ * @author woodrow73
+ */
+class VirtualLinesView extends View {
+
+    /** The number of line views kept - a few screens of lines */
+    private static final int CACHED_LINES = 256;
+
+    /** Views of recently painted lines, by their paragraph element */
+    private final Map<Element, View> lineViews = new LinkedHashMap<Element, View>(CACHED_LINES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Element, View> eldest) {
+            return size() > CACHED_LINES;
+        }
+    };
+
+    private int lineHeight = 1, charWidth = 1;
+
+    /** The length of the longest line, without its line break */
+    private int maxLineLength;
+
+    /** The paragraph element of the longest line */
+    private Element longestLine;
+
+    /** Whether lines are painted as CellRowViews rather than rows of LabelViews */
+    private final boolean cellGrid;
+
+    VirtualLinesView(Element section, boolean cellGrid) {
+        super(section);
+        this.cellGrid = cellGrid;
+    }
+
+    @Override
+    public void setParent(View parent) {
+        super.setParent(parent);
+        lineViews.clear();
+        if(parent != null) {
+            updateMetrics();
+            measureAll();
+        }
+    }
+
+    @Override
+    public float getPreferredSpan(int axis) {
+        return axis == X_AXIS ? (float) maxLineLength * charWidth : (float) getElement().getElementCount() * lineHeight;
+    }
+
+    /** The preferred size - so the pane tracks the viewport when it's larger, and scrolls when it's smaller. */
+    @Override
+    public float getMinimumSpan(int axis) {
+        return getPreferredSpan(axis);
+    }
+
+    @Override
+    public float getMaximumSpan(int axis) {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void paint(Graphics g, Shape allocation) {
+        Rectangle alloc = allocation.getBounds();
+        Rectangle clip = g.getClipBounds();
+        if(clip == null)
+            clip = alloc;
+
+        int count = getElement().getElementCount();
+        int first = Math.max(0, (clip.y - alloc.y) / lineHeight),
+                last = Math.min(count - 1, (clip.y + clip.height - alloc.y) / lineHeight);
+        for(int line = first; line <= last; line++) {
+            Rectangle lineAlloc = lineAllocation(line, alloc);
+            getLineView(line, lineAlloc).paint(g, lineAlloc);
+        }
+    }
+
+    @Override
+    public Shape modelToView(int pos, Shape a, Position.Bias b) throws BadLocationException {
+        int line = getElement().getElementIndex(pos);
+        Rectangle lineAlloc = lineAllocation(line, a.getBounds());
+        return getLineView(line, lineAlloc).modelToView(pos, lineAlloc, b);
+    }
+
+    @Override
+    public int viewToModel(float x, float y, Shape a, Position.Bias[] biasReturn) {
+        Rectangle alloc = a.getBounds();
+        int count = getElement().getElementCount();
+        int line = Math.max(0, Math.min(count - 1, (int) (y - alloc.y) / lineHeight));
+        Rectangle lineAlloc = lineAllocation(line, alloc);
+        return getLineView(line, lineAlloc).viewToModel(x, Math.max(y, lineAlloc.y), lineAlloc, biasReturn);
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+        update(e, a);
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+        update(e, a);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+        update(e, a);
+    }
+
+    /**
+     * Drops the views of the changed lines, measures them, and repaints them - and every line below them if lines
+     * were added or removed.
+     */
+    private void update(DocumentEvent e, Shape a) {
+        Element root = getElement();
+        DocumentEvent.ElementChange change = e.getChange(root);
+        boolean longestChanged = false;
+        if(change != null) {
+            for(Element removed : change.getChildrenRemoved()) {
+                lineViews.remove(removed);
+                longestChanged |= removed == longestLine;
+            }
+        }
+
+        boolean remove = e.getType() == DocumentEvent.EventType.REMOVE;
+        int first = root.getElementIndex(e.getOffset()),
+                last = root.getElementIndex(e.getOffset() + (remove ? 0 : e.getLength()));
+        // text removed from the longest line may have shortened it
+        longestChanged |= remove && root.getElement(first) == longestLine;
+        for(int line = first; line <= last; line++) {
+            lineViews.remove(root.getElement(line));
+            measure(root.getElement(line));
+        }
+        if(longestChanged)
+            measureAll();
+
+        int oldLineHeight = lineHeight;
+        updateMetrics();
+        if(lineHeight != oldLineHeight)
+            lineViews.clear();
+        preferenceChanged(null, true, true);
+
+        Container host = getContainer();
+        if(host != null && a != null) {
+            Rectangle alloc = a.getBounds();
+            int y = alloc.y + first * lineHeight;
+            int height = change != null || lineHeight != oldLineHeight ? Integer.MAX_VALUE / 2 :
+                    (last - first + 1) * lineHeight;
+            host.repaint(alloc.x, y, Math.max(alloc.width, (int) getPreferredSpan(X_AXIS)), height);
+        }
+    }
+
+    /** Updates maxLineLength with the length of a line. */
+    private void measure(Element line) {
+        int length = line.getEndOffset() - line.getStartOffset() - 1;
+        if(longestLine == null || length > maxLineLength) {
+            maxLineLength = length;
+            longestLine = line;
+        }
+    }
+
+    /** Sets maxLineLength from the length of every line. */
+    private void measureAll() {
+        maxLineLength = 0;
+        longestLine = null;
+        Element root = getElement();
+        for(int i = 0; i < root.getElementCount(); i++)
+            measure(root.getElement(i));
+    }
+
+    /** Sets the line height and character width from the font of the end of the document - the latest text. */
+    private void updateMetrics() {
+        Container host = getContainer();
+        if(host == null || !(getDocument() instanceof StyledDocument))
+            return;
+
+        Element leaf = ((StyledDocument) getDocument()).getCharacterElement(Math.max(0, getDocument().getLength() - 1));
+        FontMetrics metrics = host.getFontMetrics(((StyledDocument) getDocument()).getFont(leaf.getAttributes()));
+        lineHeight = Math.max(1, metrics.getHeight());
+        charWidth = Math.max(1, metrics.charWidth('m'));
+    }
+
+    private Rectangle lineAllocation(int line, Rectangle alloc) {
+        return new Rectangle(alloc.x, alloc.y + line * lineHeight,
+                Math.max(alloc.width, (int) getPreferredSpan(X_AXIS)), lineHeight);
+    }
+
+    /** @return The view of a line, created if it isn't cached, and sized to its allocation. */
+    private View getLineView(int line, Rectangle lineAlloc) {
+        Element element = getElement().getElement(line);
+        View view = lineViews.get(element);
+        if(view == null) {
+            // a row of character cells, or a row of the line's LabelViews
+            view = cellGrid ? new CellRowView(element) : new BoxView(element, X_AXIS);
+            view.setParent(this);
+            lineViews.put(element, view);
+        }
+        view.setSize(lineAlloc.width, lineAlloc.height);
+        return view;
+    }
+
+}
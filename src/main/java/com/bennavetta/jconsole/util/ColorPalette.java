@@ -0,0 +1,171 @@
+package com.bennavetta.jconsole.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed palette of colors with a precomputed nearest-color lookup table.<br><br>
+ * The RGB cube is quantized into cells of 2^(8 - bitsPerChannel) values per channel, and the table stores, for each
+ * cell, the palette entries that can be the nearest to some color in it (using the same weighted distance as
+ * ColorUtil.colorDistance()) - an entry is left out if it's farther from every color of the cell than another entry
+ * is from any of them. Most cells have a single candidate, so after the table is built on first use, nearest() is
+ * usually a shift, an or and an array read; otherwise it compares the color with the cell's few candidates.
+ */
+public class ColorPalette {
+
+    /** The palette colors as packed 0xRRGGBB ints */
+    private final int[] colors;
+
+    private final int bitsPerChannel;
+
+    /**
+     * For every quantized cell, the palette index of its only candidate, or the bitwise complement of the offset of
+     * its candidates in candidateLists - built on first use
+     */
+    private volatile int[] table;
+
+    /** The candidate lists of the cells with more than one candidate: the count, then the indices in ascending order */
+    private char[] candidateLists;
+
+    /**
+     * @param colors The palette colors as packed 0xRRGGBB ints (alpha is ignored). At most 65536 colors.
+     * @param bitsPerChannel How many of the high bits of each channel index the lookup table, 1-8. The table has
+     *                       2^(3 * bitsPerChannel) int entries; more bits leave fewer cells with several candidates,
+     *                       e.g. 6 bits (a 1MB table) gives about 89% of the colors a single candidate of the
+     *                       16 ANSI colors. Either way, the exact nearest entry is found.
+     * @throws IllegalArgumentException if the palette is empty or too big, or bitsPerChannel is out of range.
+     */
+    public ColorPalette(int[] colors, int bitsPerChannel) throws IllegalArgumentException {
+        if(colors.length == 0 || colors.length > 65536)
+            throw new IllegalArgumentException("Palette size must be between 1 and 65536: " + colors.length);
+        if(bitsPerChannel < 1 || bitsPerChannel > 8)
+            throw new IllegalArgumentException("bitsPerChannel must be between 1 and 8: " + bitsPerChannel);
+
+        this.colors = new int[colors.length];
+        for(int i = 0; i < colors.length; i++)
+            this.colors[i] = colors[i] & 0xFFFFFF;
+        this.bitsPerChannel = bitsPerChannel;
+    }
+
+    /**
+     * Finds the palette entry nearest to a color in constant time without allocating.
+     * @param rgb The color as a packed 0xRRGGBB int (alpha is ignored).
+     * @return The index of the nearest palette entry. Ties go to the lowest index.
+     */
+    public int nearest(int rgb) {
+        int[] table = this.table;
+        if(table == null)
+            table = buildTable();
+
+        int shift = 8 - bitsPerChannel;
+        int r = ((rgb >> 16) & 0xFF) >> shift,
+                g = ((rgb >> 8) & 0xFF) >> shift,
+                b = (rgb & 0xFF) >> shift;
+        int cell = table[(((r << bitsPerChannel) | g) << bitsPerChannel) | b];
+        if(cell >= 0)
+            return cell;
+
+        // several candidates - compare against each, in ascending order so ties go to the lowest index
+        char[] lists = candidateLists;
+        int offset = ~cell, count = lists[offset];
+        int nearest = lists[offset + 1], nearestDistance = ColorUtil.colorDistanceSquared(rgb, colors[nearest]);
+        for(int i = 2; i <= count; i++) {
+            int index = lists[offset + i];
+            int distance = ColorUtil.colorDistanceSquared(rgb, colors[index]);
+            if(distance < nearestDistance) {
+                nearest = index;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    /** @return The number of colors in the palette. */
+    public int size() {
+        return colors.length;
+    }
+
+    /**
+     * @param index The index of a palette entry.
+     * @return The palette entry as a packed 0xRRGGBB int.
+     */
+    public int rgb(int index) {
+        return colors[index];
+    }
+
+    private synchronized int[] buildTable() {
+        if(table != null)
+            return table;
+
+        int cells = 1 << bitsPerChannel, shift = 8 - bitsPerChannel, width = 1 << shift;
+        int[] built = new int[cells * cells * cells];
+        char[] lists = new char[64];
+        int listsLength = 0;
+        int[] lower = new int[colors.length];
+        int[] candidates = new int[colors.length];
+        int i = 0;
+        for(int r = 0; r < cells; r++) {
+            for(int g = 0; g < cells; g++) {
+                for(int b = 0; b < cells; b++) {
+                    int lo = (r << shift) << 16 | (g << shift) << 8 | (b << shift);
+                    int hi = lo + ((width - 1) << 16 | (width - 1) << 8 | (width - 1));
+
+                    // the nearest entry of any color in the cell is at most as far as the smallest upper bound
+                    int minUpper = Integer.MAX_VALUE;
+                    for(int c = 0; c < colors.length; c++) {
+                        lower[c] = distanceBound(lo, hi, colors[c], false);
+                        minUpper = Math.min(minUpper, distanceBound(lo, hi, colors[c], true));
+                    }
+                    int count = 0;
+                    for(int c = 0; c < colors.length; c++) {
+                        if(lower[c] <= minUpper)
+                            candidates[count++] = c;
+                    }
+
+                    if(count == 1) {
+                        built[i++] = candidates[0];
+                        continue;
+                    }
+                    if(listsLength + count + 1 > lists.length)
+                        lists = Arrays.copyOf(lists, Math.max(lists.length * 2, listsLength + count + 1));
+                    built[i++] = ~listsLength;
+                    lists[listsLength++] = (char) count;
+                    for(int c = 0; c < count; c++)
+                        lists[listsLength++] = (char) candidates[c];
+                }
+            }
+        }
+
+        candidateLists = Arrays.copyOf(lists, listsLength);
+        table = built; // published after candidateLists, which nearest() reads through it
+        return built;
+    }
+
+    /**
+     * Bounds ColorUtil.colorDistanceSquared() between a palette entry and the colors of a cell - each term of the
+     * distance is monotonic in its channel difference and in the mean red, so it's bounded by their extremes.
+     * @param lo The color of the cell with the lowest channels.
+     * @param hi The color of the cell with the highest channels.
+     * @param rgb The palette entry.
+     * @param upper Whether to return the upper bound, otherwise the lower bound.
+     * @return The bound of the distance between the entry and any color of the cell.
+     */
+    private static int distanceBound(int lo, int hi, int rgb, boolean upper) {
+        int r = (rgb >> 16) & 0xFF, rLo = (lo >> 16) & 0xFF, rHi = (hi >> 16) & 0xFF;
+        int rSquared = channelSquareBound(rLo, rHi, r, upper),
+                gSquared = channelSquareBound((lo >> 8) & 0xFF, (hi >> 8) & 0xFF, (rgb >> 8) & 0xFF, upper),
+                bSquared = channelSquareBound(lo & 0xFF, hi & 0xFF, rgb & 0xFF, upper);
+        int rmeanLo = (rLo + r) / 2, rmeanHi = (rHi + r) / 2;
+
+        // the red term grows with the mean red and the blue term shrinks with it
+        return (((512 + (upper ? rmeanHi : rmeanLo)) * rSquared) >> 8) + 4 * gSquared +
+                (((767 - (upper ? rmeanLo : rmeanHi)) * bSquared) >> 8);
+    }
+
+    /** @return The bound of the squared difference between a channel value and the values from lo to hi. */
+    private static int channelSquareBound(int lo, int hi, int value, boolean upper) {
+        int difference = upper ? Math.max(Math.abs(value - lo), Math.abs(value - hi)) :
+                value < lo ? lo - value : value > hi ? value - hi : 0;
+        return difference * difference;
+    }
+
+}
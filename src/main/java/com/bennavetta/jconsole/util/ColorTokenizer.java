@@ -0,0 +1,183 @@
+package com.bennavetta.jconsole.util;
+
+import java.awt.*;
+import java.util.Map;
+
+/**
+ * Splits text into (color, text-run) spans in a single pass over the string.<br><br>
+ * Recognizes hex codes in the format '0xRRGGBB' and the ANSI color codes inside ColorUtil.ansiColorMap.
+ * The codes themselves are removed from the output; every other character belongs to exactly one span.
+ * No regex is compiled and no substrings are made while tokenizing - spans are reported as index ranges
+ * into the original string.
+ */
+public class ColorTokenizer {
+
+    /** Receives the spans found by ColorTokenizer.tokenize() */
+    public interface SpanHandler {
+        /**
+         * Called once per run of text that shares a single color.
+         * @param color The color of the run, or null if no color code preceded it (keep the current color).
+         * @param text The tokenized string.
+         * @param start The index of the first character of the run (inclusive).
+         * @param end The index after the last character of the run (exclusive).
+         */
+        void span(Color color, String text, int start, int end);
+    }
+
+    private static final char ESC = '\u001B';
+
+    /** The ANSI codes from ColorUtil.ansiColorMap, keyed by the packed characters between '[' and 'm' */
+    private static final int[] ansiKeys;
+    private static final Color[] ansiColors;
+    private static final boolean[] ansiIsReset;
+
+    static {
+        ansiKeys = new int[ColorUtil.ansiColorMap.size()];
+        ansiColors = new Color[ansiKeys.length];
+        ansiIsReset = new boolean[ansiKeys.length];
+
+        int i = 0;
+        for(Map.Entry<String, Color> entry : ColorUtil.ansiColorMap.entrySet()) {
+            String ansi = entry.getKey();
+            ansiKeys[i] = packAnsiBody(ansi, 2, ansi.length() - 1);
+            ansiColors[i] = entry.getValue();
+            ansiIsReset[i] = ansi.equals(ColorUtil.resetANSI);
+            i++;
+        }
+    }
+
+    /**
+     * Walks the text once, reporting every run of text between color codes to the handler.<br>
+     * Consecutive color codes collapse into the last one. A span with an empty range is reported when the text ends
+     * with a color code, so the handler always sees the last color change.
+     * @param text The text to tokenize.
+     * @param resetColor The color that \u001B[0m is mapped to.
+     * @param handler Receives each span in order.
+     */
+    public static void tokenize(String text, Color resetColor, SpanHandler handler) {
+        Color color = null;
+        int runStart = 0;
+        boolean pendingColor = false;
+        int length = text.length();
+
+        for(int i = 0; i < length; ) {
+            char c = text.charAt(i);
+            int codeLength = 0;
+            Color codeColor = null;
+
+            if(c == '0' && isHexCode(text, i)) {
+                codeLength = 8;
+                codeColor = new Color(parseHex(text, i + 2));
+            }
+            else if(c == ESC) {
+                int mIndex = ansiEnd(text, i);
+                if(mIndex != -1) {
+                    codeLength = mIndex + 1 - i;
+                    int index = lookupAnsi(text, i + 2, mIndex);
+                    if(index != -1) {
+                        codeColor = ansiIsReset[index] ? resetColor : ansiColors[index];
+                    }
+                    else {
+                        System.err.println("ANSI escape sequence not supported: " +
+                                text.substring(i, mIndex + 1).replace("\u001B", "\\u001B") +
+                                "\nRemoving it from the string.\nSupported ANSI colors:\n" +
+                                ColorUtil.getSupportedAnsiColors(true, "\n"));
+                    }
+                }
+            }
+
+            if(codeLength == 0) {
+                i++;
+                continue;
+            }
+
+            if(i > runStart) {
+                handler.span(color, text, runStart, i);
+                pendingColor = false;
+            }
+
+            if(codeColor != null) {
+                color = codeColor;
+                pendingColor = true;
+            }
+            i += codeLength;
+            runStart = i;
+        }
+
+        if(length > runStart || pendingColor)
+            handler.span(color, text, runStart, length);
+    }
+
+    /** @return True if a '0xRRGGBB' hex code starts at the given index. */
+    private static boolean isHexCode(String text, int start) {
+        if(start + 8 > text.length() || text.charAt(start + 1) != 'x')
+            return false;
+
+        for(int i = start + 2; i < start + 8; i++) {
+            if(Character.digit(text.charAt(i), 16) == -1)
+                return false;
+        }
+        return true;
+    }
+
+    /** Parses the six hex digits starting at the given index into a packed RGB int. */
+    private static int parseHex(String text, int start) {
+        int rgb = 0;
+        for(int i = start; i < start + 6; i++)
+            rgb = (rgb << 4) | Character.digit(text.charAt(i), 16);
+        return rgb;
+    }
+
+    /**
+     * Finds the 'm' terminating an ANSI color code that starts at the given index - matching the pattern
+     * \u001B\[.{1,4}m used by ColorUtil.replaceAllAnsiWithHex().
+     * @return The index of the 'm', or -1 if no color code starts at the index.
+     */
+    private static int ansiEnd(String text, int start) {
+        if(start + 3 >= text.length() || text.charAt(start + 1) != '[')
+            return -1;
+
+        int max = Math.min(text.length() - 1, start + 6);
+        for(int i = start + 3; i <= max; i++) {
+            char c = text.charAt(i);
+            if(c == 'm')
+                return i;
+            if(c == '\n' || c == '\r')
+                return -1;
+        }
+        return -1;
+    }
+
+    /** @return The index of the ANSI code inside ansiKeys with the given body, or -1 if it isn't supported. */
+    private static int lookupAnsi(String text, int start, int end) {
+        int key = packAnsiBody(text, start, end);
+        if(key == -1)
+            return -1;
+
+        for(int i = 0; i < ansiKeys.length; i++) {
+            if(ansiKeys[i] == key)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Packs up to 4 characters into an int, 7 bits each, with the count in the top bits.
+     * @return The packed characters, or -1 if the body is longer than 4 characters or contains non-ASCII characters.
+     */
+    private static int packAnsiBody(String s, int start, int end) {
+        int length = end - start;
+        if(length < 1 || length > 4)
+            return -1;
+
+        int key = length << 28;
+        for(int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if(c > 0x7F)
+                return -1;
+            key |= c << (7 * (i - start));
+        }
+        return key;
+    }
+
+}
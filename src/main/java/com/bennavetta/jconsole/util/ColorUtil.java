@@ -94,23 +94,135 @@ public class ColorUtil {
     }
 
     /**
-     * Performs color distance calculations to find the closest valid ANSI color to the given color.
+     * Finds the closest valid ANSI color to the given color with a precomputed lookup table - constant time
+     * and no allocation.
      *
      * @param color The color to convert to an ANSI escape sequence.
      * @return The ANSI escape sequence of the closest ANSI color to the given color.
      */
     public static String colorToANSI(Color color) {
-        Color closestColor = D_Blue;
-        String closestColorANSI = "\u001B[34m";
+        return AnsiPalette.codes[AnsiPalette.palette.nearest(color.getRGB())];
+    }
+
+    /**
+     * Finds the closest color of the xterm 256-color palette to the given color with a precomputed lookup table.
+     * Only the color cube and grayscale ramp (16-255) are considered, since terminals often theme the first 16 colors.
+     *
+     * @param color The color to convert.
+     * @return The xterm 256-color palette index of the closest color, 16-255.
+     */
+    public static int colorToXterm256(Color color) {
+        return Xterm256Palette.palette.nearest(color.getRGB()) + 16;
+    }
 
-        for(Map.Entry<String, Color> entry : ansiColorMap.entrySet()) {
-            if(colorDistance(color, entry.getValue()) < colorDistance(color, closestColor)) {
-                closestColor = entry.getValue();
-                closestColorANSI = entry.getKey();
+    /**
+     * Finds the closest color of the xterm 256-color palette to the given color.
+     *
+     * @param color The color to convert to an ANSI escape sequence.
+     * @return The 256-color ANSI escape sequence (ESC[38;5;Nm) of the closest xterm color to the given color.
+     */
+    public static String colorToANSI256(Color color) {
+        return "\u001B[38;5;" + colorToXterm256(color) + "m";
+    }
+
+    /**
+     * Gets a color of the xterm 256-color palette.
+     *
+     * @param index The palette index, 0-255.
+     * @return The color at the index - the same Color object for every call.
+     * @throws ArrayIndexOutOfBoundsException if the index is outside 0-255.
+     */
+    public static Color xterm256ToColor(int index) {
+        return Xterm256Palette.colors[index];
+    }
+
+    /**
+     * Gets a gradient through the colors, interpolated in OKLab and precomputed - e.g. for the frames of a background
+     * transition. Gradients are cached by their colors and steps, so cycling through the same colors again reuses
+     * the same table.
+     *
+     * @param stepsBetweenColors The number of steps from each color to the next, at least 1.
+     * @param colors The colors to pass through, at least one. Alpha is ignored.
+     * @return The gradient, with (colors.length - 1) * stepsBetweenColors + 1 steps.
+     * @throws IllegalArgumentException if there are no colors or stepsBetweenColors isn't positive.
+     */
+    public static Gradient gradient(int stepsBetweenColors, Color... colors) throws IllegalArgumentException {
+        if(colors.length == 0 || stepsBetweenColors < 1)
+            throw new IllegalArgumentException("A gradient needs a color and a positive number of steps");
+
+        int[] stops = new int[colors.length];
+        for(int i = 0; i < colors.length; i++)
+            stops[i] = colors[i].getRGB() & 0xFFFFFF;
+        return GradientCache.get(stops, stepsBetweenColors);
+    }
+
+    /** @return The gradient through the colors of rainbow - see gradient(). */
+    public static Gradient rainbowGradient(int stepsBetweenColors) {
+        return gradient(stepsBetweenColors, rainbow);
+    }
+
+    /** @return The gradient through the colors of almostRainbow - see gradient(). */
+    public static Gradient almostRainbowGradient(int stepsBetweenColors) {
+        return gradient(stepsBetweenColors, almostRainbow);
+    }
+
+    /** The most recently used gradients, by their stops and steps */
+    private static class GradientCache {
+        private static final int CACHED_GRADIENTS = 32;
+
+        private static final Map<String, Gradient> gradients = new LinkedHashMap<String, Gradient>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Gradient> eldest) {
+                return size() > CACHED_GRADIENTS;
             }
+        };
+
+        private static synchronized Gradient get(int[] stops, int stepsBetweenStops) {
+            return gradients.computeIfAbsent(stepsBetweenStops + Arrays.toString(stops),
+                    key -> new Gradient(stops, stepsBetweenStops));
+        }
+    }
+
+    /** The distinct colors of ansiColorMap and their first ANSI code - built on first use of colorToANSI() */
+    private static class AnsiPalette {
+        private static final ColorPalette palette;
+        private static final String[] codes;
+
+        static {
+            Map<Integer, String> firstCodes = new LinkedHashMap<>();
+            for(Map.Entry<String, Color> entry : ansiColorMap.entrySet())
+                firstCodes.putIfAbsent(entry.getValue().getRGB() & 0xFFFFFF, entry.getKey());
+
+            palette = new ColorPalette(firstCodes.keySet().stream().mapToInt(Integer::intValue).toArray(), 6);
+            codes = firstCodes.values().toArray(new String[0]);
         }
+    }
+
+    /** The xterm 256-color palette: 16 system colors, a 6x6x6 color cube and a 24 step grayscale ramp */
+    private static class Xterm256Palette {
+        private static final Color[] colors = new Color[256];
+
+        /** The color cube and grayscale ramp, indexes 16-255 */
+        private static final ColorPalette palette;
+
+        static {
+            int[] system = { 0x000000, 0x800000, 0x008000, 0x808000, 0x000080, 0x800080, 0x008080, 0xc0c0c0,
+                    0x808080, 0xff0000, 0x00ff00, 0xffff00, 0x0000ff, 0xff00ff, 0x00ffff, 0xffffff };
+            int[] cubeLevels = { 0, 95, 135, 175, 215, 255 };
+
+            int[] rgb = new int[256];
+            System.arraycopy(system, 0, rgb, 0, 16);
+            for(int i = 0; i < 216; i++)
+                rgb[16 + i] = (cubeLevels[i / 36] << 16) | (cubeLevels[(i / 6) % 6] << 8) | cubeLevels[i % 6];
+            for(int i = 0; i < 24; i++) {
+                int gray = 8 + i * 10;
+                rgb[232 + i] = (gray << 16) | (gray << 8) | gray;
+            }
 
-        return closestColorANSI;
+            for(int i = 0; i < 256; i++)
+                colors[i] = new Color(rgb[i]);
+            palette = new ColorPalette(Arrays.copyOfRange(rgb, 16, 256), 5);
+        }
     }
 
     /**
@@ -149,8 +261,23 @@ public class ColorUtil {
      * @return Distance between c1 and c2, where the maximum distance is 765
      */
     public static double colorDistance(Color c1, Color c2) {
-        return colorDistance(new int[]{ c1.getRed(), c1.getGreen(), c1.getBlue()},
-                new int[]{ c2.getRed(), c2.getGreen(), c2.getBlue()}, false);
+        return Math.sqrt(colorDistanceSquared(c1.getRGB(), c2.getRGB()));
+    }
+
+    /**
+     * Find the squared distance between 2 colors without allocating - for comparing distances without a sqrt
+     * @param rgb1 Color 1 as a packed 0xRRGGBB int (alpha is ignored)
+     * @param rgb2 Color 2 as a packed 0xRRGGBB int (alpha is ignored)
+     * @return Squared distance between rgb1 and rgb2, the square of colorDistance()
+     */
+    public static int colorDistanceSquared(int rgb1, int rgb2) {
+        int r1 = (rgb1 >> 16) & 0xFF, r2 = (rgb2 >> 16) & 0xFF;
+        int rmean = (r1 + r2) / 2;
+        int r = r1 - r2;
+        int g = ((rgb1 >> 8) & 0xFF) - ((rgb2 >> 8) & 0xFF);
+        int b = (rgb1 & 0xFF) - (rgb2 & 0xFF);
+
+        return (((512+rmean)*r*r)>>8) + 4*g*g + (((767-rmean)*b*b)>>8);
     }
 
     /**
@@ -0,0 +1,98 @@
+package com.bennavetta.jconsole.util;
+
+import java.awt.Color;
+
+/**
+ * A precomputed gradient through a list of colors, interpolated in the OKLab color space - so the steps look evenly
+ * spaced in lightness and hue, without the dark or gray middle that mixing sRGB channels gives.<br>
+ * Every step is computed when the gradient is built, as a packed 0xRRGGBB int and a Color; reading a step does no
+ * color math and allocates nothing. Get gradients from ColorUtil.gradient(), which caches them.
+ *
+ * @author woodrow73
+ */
+public final class Gradient {
+
+    /** Each step as a packed 0xRRGGBB int */
+    private final int[] rgb;
+
+    /** Each step as an opaque Color */
+    private final Color[] colors;
+
+    /**
+     * @param stops The colors to pass through, as packed 0xRRGGBB ints - at least one.
+     * @param stepsBetweenStops The number of steps from each stop to the next; the stop itself is the first of them.
+     */
+    Gradient(int[] stops, int stepsBetweenStops) {
+        rgb = new int[(stops.length - 1) * stepsBetweenStops + 1];
+        double[] from = new double[3], to = new double[3];
+        for(int stop = 0; stop < stops.length - 1; stop++) {
+            toOklab(stops[stop], from);
+            toOklab(stops[stop + 1], to);
+            for(int step = 0; step < stepsBetweenStops; step++) {
+                double t = (double) step / stepsBetweenStops;
+                rgb[stop * stepsBetweenStops + step] = step == 0 ? stops[stop] & 0xFFFFFF : fromOklab(
+                        from[0] + (to[0] - from[0]) * t,
+                        from[1] + (to[1] - from[1]) * t,
+                        from[2] + (to[2] - from[2]) * t);
+            }
+        }
+        rgb[rgb.length - 1] = stops[stops.length - 1] & 0xFFFFFF;
+
+        colors = new Color[rgb.length];
+        for(int i = 0; i < rgb.length; i++)
+            colors[i] = new Color(rgb[i]);
+    }
+
+    /** @return The number of steps, including the first and last stop. */
+    public int size() {
+        return rgb.length;
+    }
+
+    /** @return A step as a packed 0xRRGGBB int. */
+    public int getRGB(int step) {
+        return rgb[step];
+    }
+
+    /** @return A step as a Color - the same object for every call. */
+    public Color getColor(int step) {
+        return colors[step];
+    }
+
+    /** Converts a packed sRGB color to OKLab (L, a, b) - see https://bottosson.github.io/posts/oklab/ */
+    private static void toOklab(int rgb, double[] lab) {
+        double r = toLinear(rgb >> 16 & 0xFF), g = toLinear(rgb >> 8 & 0xFF), b = toLinear(rgb & 0xFF);
+
+        double l = Math.cbrt(0.4122214708 * r + 0.5363325363 * g + 0.0514459929 * b);
+        double m = Math.cbrt(0.2119034982 * r + 0.6806995451 * g + 0.1073969566 * b);
+        double s = Math.cbrt(0.0883024619 * r + 0.2817188376 * g + 0.6299787005 * b);
+
+        lab[0] = 0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s;
+        lab[1] = 1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s;
+        lab[2] = 0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s;
+    }
+
+    /** @return The packed sRGB color of an OKLab color, clamped to the sRGB gamut. */
+    private static int fromOklab(double lightness, double a, double b) {
+        double l = lightness + 0.3963377774 * a + 0.2158037573 * b;
+        double m = lightness - 0.1055613458 * a - 0.0638541728 * b;
+        double s = lightness - 0.0894841775 * a - 1.2914855480 * b;
+        l = l * l * l;
+        m = m * m * m;
+        s = s * s * s;
+
+        return fromLinear(4.0767416621 * l - 3.3077115913 * m + 0.2309699292 * s) << 16 |
+                fromLinear(-1.2684380046 * l + 2.6097574011 * m - 0.3413193965 * s) << 8 |
+                fromLinear(-0.0041960863 * l - 0.7034186147 * m + 1.7076147010 * s);
+    }
+
+    private static double toLinear(int channel) {
+        double c = channel / 255.0;
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static int fromLinear(double c) {
+        c = c <= 0.0031308 ? c * 12.92 : 1.055 * Math.pow(c, 1 / 2.4) - 0.055;
+        return (int) Math.round(Math.max(0, Math.min(1, c)) * 255);
+    }
+
+}